@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib;
+
+
+//Standard JAVA imports
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import RiDI_Column_Lib.interfaces.InterfaceInitialConditions;
+import RiDI_Column_Lib.interfaces.classFactory;
+
+
+/**
+ * Check of the steady state memory use of the column solver: reads the input files of the working directory as Main,
+ * warms the solver up on the first column and prints the bytes allocated by the solver thread per nonlinear iteration,
+ * which should be zero. Run from the directory of a test case, the number of measured steps is the optional argument.
+ */
+public class AllocationCheck {
+
+	//Logger
+	private static Logger logger;
+
+
+	public static void main(String[] args) {
+
+		//Create logger, the checked loop must not be traced
+		logger = Logger.getLogger("RiDI");
+		logger.setLevel(Level.WARN);
+		Locale.setDefault(new Locale("en", "US"));
+
+		int steps = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+		//Allocation counter of the current thread
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if(!threads.isThreadAllocatedMemorySupported()) {
+			System.out.println("ERROR: thread allocated memory not supported by this JVM.");
+			System.exit(1);
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long threadId = Thread.currentThread().getId();
+
+		//Read data and create the basin as Main
+		NumericalModelParameters Numerics = new NumericalModelParameters();
+		Basin ProjectBasin = new Basin();
+		VerticalInfiltration BasinVerticalInfiltration = new VerticalInfiltration(ProjectBasin);
+		Climate BasinClimate = new Climate();
+
+		Numerics.ReadInputFile("input.txt");
+		ProjectBasin.ReadSoilTypesCatalog("SoilParameters.csv");
+		ProjectBasin.ComputePropertiesTable(Numerics.MinSucTab, Numerics.MaxSucTab, Numerics.NumberRowsTab);
+		ProjectBasin.ReadSoilUnitsCatalog("SoilStratigraphy.csv");
+		ProjectBasin.ReadColumnSlopeFile("columnSlope.txt");
+		InterfaceInitialConditions BasinInitialConditions = (InterfaceInitialConditions) new classFactory().makeFactory("RiDI_Column_Lib.initialConditions." + Numerics.initialConditions, ProjectBasin);
+		BasinInitialConditions.ReadInputFile("initialConditions.txt");
+		BasinClimate.ReadInputFile("rainfall.txt");
+		BasinVerticalInfiltration.readBottomInfiltration("bottomInfiltration.txt");
+
+		ProjectBasin.CreateBasinDataStructures(Numerics.ColumnNodes, Numerics.MeshSpacing, Numerics.MeshGrading);
+		BasinInitialConditions.ComputeInitialConditions();
+		BasinVerticalInfiltration.InitializeAuxVariables(Numerics);
+
+		//First column and its own solver workspace
+		Richards1D solver = BasinVerticalInfiltration.CreateSolver();
+		SoilColumnStaticProperties Static = ProjectBasin.BasinSoilColumns[0][0].ColumnStaticProperties;
+		SoilColumnDynamicVariables Dynamic = ProjectBasin.BasinSoilColumns[0][0].ColumnDynamicVariables;
+		BottomBoundaryCondition BottomCondition = BasinVerticalInfiltration.ProjectBottomBoundaryCondition;
+		double precipitation = BasinClimate.getRainfall(Numerics.Tini);
+
+		//Warm up, the workspaces are sized and the code compiled
+		double[] waterDepth = new double[1];
+		ColumnSteps(solver, Numerics, Static, Dynamic, BottomCondition, precipitation, waterDepth, steps);
+
+		//Checked steps
+		long iterations = solver.IterationCount;
+		long bytes = threads.getThreadAllocatedBytes(threadId);
+		ColumnSteps(solver, Numerics, Static, Dynamic, BottomCondition, precipitation, waterDepth, steps);
+		bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+		iterations = solver.IterationCount - iterations;
+
+		//Screen
+		System.out.println("Allocation check: " + steps + " steps, " + iterations + " iterations, " + bytes + " bytes, "
+				+ (iterations > 0 ? (double) bytes / iterations : 0.0) + " bytes per iteration.");
+
+		System.exit(bytes == 0 ? 0 : 1);
+
+	}
+
+
+	/**
+	 * Basin time steps of one column, as the column step of VerticalInfiltration with a constant rainfall.
+	 */
+	private static void ColumnSteps(Richards1D solver, NumericalModelParameters Numerics, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic,
+			BottomBoundaryCondition BottomCondition, double precipitation, double[] waterDepth, int steps) {
+
+		int top = Static.nodeZ.length - 1;
+		double dt = Numerics.dt;
+
+		for(int n = 0; n < steps; n++) {
+			double dtLocal = 0.0;
+			while(dtLocal < dt) {
+				dtLocal = dtLocal + solver.timeStep(Numerics.TolTh, Numerics.TolH, Numerics.MaxIt, (dt - dtLocal), Numerics.dtMin,
+						Static, Dynamic, waterDepth[0], precipitation, BottomCondition);
+				waterDepth[0] = Math.max(Dynamic.SuctionNew[top], 0.0);
+				solver.timeForward((dt - dtLocal), dt, Static, Dynamic);
+			}
+		}
+
+	}
+
+}
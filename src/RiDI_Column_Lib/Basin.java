@@ -71,6 +71,7 @@ public class Basin {
     public SextanteGrid ExtraWeightRaster;
     public SextanteGrid BrokenCellRaster;
     public SextanteGrid Watertable;
+    public SextanteGrid DegradedRaster;
 
     //Physical parameters
     public double gParameter = 9.81;
@@ -85,6 +86,7 @@ public class Basin {
     public static final String W = "W";
     public static final String B = "B";    
     public static final String WT = "WT";    
+    public static final String DEGRADED = "DEGRADED";    
     public static final String DTM = "DTM";    
     public static final String SOILUNIT = "SOILUNIT";    
     public static final String FILL = "FILL";    
@@ -171,13 +173,14 @@ public class Basin {
 		
 	}	
 		
-	public void CreateBasinDataStructures(int auxNumNodes){
+	public void CreateBasinDataStructures(int auxNumNodes, double meshSpacing, double meshGrading){
 		
 		//Log
 		logger.info("Call to CreateBasinDataStructures().");
 		
-		//Store number of nodes per column
-		numNodes = auxNumNodes;
+		//Store number of nodes per column, the largest column when the units have their own mesh
+		numNodes = (meshSpacing > 0.0) ? 0 : auxNumNodes;
+		BasinUnitsCatalog.setMeshResolution(meshSpacing, meshGrading);
 		
 		//Define dummy grid extent
 		GridExtent BasinExtent = new GridExtent();
@@ -220,6 +223,10 @@ public class Basin {
 		Watertable.create(WT, "Dummy_Watertable.asc", BasinExtent, IRasterLayer.RASTER_DATA_TYPE_DOUBLE, 1, DefaultEngineeringCRS.CARTESIAN_2D);
 		Watertable.setFullExtent();
 		
+		DegradedRaster = new SextanteGrid();
+		DegradedRaster.create(DEGRADED, "Dummy_Degraded.asc", BasinExtent, IRasterLayer.RASTER_DATA_TYPE_INT, 1, DefaultEngineeringCRS.CARTESIAN_2D);
+		DegradedRaster.setFullExtent();
+		
 		dtm = new SextanteGrid();
 		dtm.create(DTM, "Dummy_Broken.asc", BasinExtent, IRasterLayer.RASTER_DATA_TYPE_INT, 1, DefaultEngineeringCRS.CARTESIAN_2D);
 		dtm.setFullExtent();
@@ -253,6 +260,7 @@ public class Basin {
 		ExtraWeightRaster.setCellValue(0, 0, 0.0);
 		BrokenCellRaster.setCellValue(0, 0, 0.0);
 		Watertable.setCellValue(0, 0, 0.0);
+		DegradedRaster.setCellValue(0, 0, 0.0);
 		dtm.setCellValue(0, 0, 0.0);
 		soilUnit.setCellValue(0, 0, 1.0);
 	    FillTopoRaster.setCellValue(0, 0, 0.0);
@@ -271,6 +279,7 @@ public class Basin {
             	if (!soilUnit.isNoDataValue(soilUnit.getCellValueAsInt(x, y))) {
             		BasinSoilColumns[x][y] = new SoilColumn(soilUnit.getCellValueAsInt(x, y));
             		BasinSoilColumns[x][y].CreateColumnNodes(auxNumNodes,BasinUnitsCatalog,BasinSoilsCatalog);
+            		numNodes = Math.max(numNodes, BasinSoilColumns[x][y].ColumnStaticProperties.nodeZ.length);
             	}
             }
         }
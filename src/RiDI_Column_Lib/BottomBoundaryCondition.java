@@ -18,6 +18,9 @@ package RiDI_Column_Lib;
 
 import org.apache.log4j.Logger;
 
+import RiDI_Column_Lib.interfaces.InterfaceBottomBoundaryCondition;
+import RiDI_Column_Lib.interfaces.classFactory;
+
 public class BottomBoundaryCondition {
 	
     //Logger
@@ -30,6 +33,9 @@ public class BottomBoundaryCondition {
 	public double hSeep;
 	public double SuctionBottom;
 	public double FluxBottom;
+	
+	//Model of the condition, resolved once from its name
+	public InterfaceBottomBoundaryCondition BottomBoundaryModel;
 
 	public BottomBoundaryCondition() {
 
@@ -37,4 +43,18 @@ public class BottomBoundaryCondition {
         logger = Logger.getLogger("RiDI.BottomBoundaryCondition");
 
 	}
+	
+	public void CreateBottomBoundaryModel() {
+		
+		//Log
+		logger.info("Call to CreateBottomBoundaryModel().");
+		
+		//Create the class factory to get the bottom boundary condition object
+		classFactory BBCclassFactory = new classFactory();
+
+		//Call the maker
+		BottomBoundaryModel = (InterfaceBottomBoundaryCondition) BBCclassFactory.makeFactory("RiDI_Column_Lib.bottomBoundaryConditions.BBC_" + BottomBoundaryCondName);
+		BottomBoundaryModel.Initialize(this);
+		
+	}
 }
\ No newline at end of file
@@ -50,6 +50,21 @@ public class Climate {
 		return interpPiecewise(time, rainfall, t);
 
 	}
+	
+	/**
+	 * Time of the first change of rainfall intensity after t (Double.MAX_VALUE if the intensity does not change any more).
+	 */
+	public double getNextRainfallChange(double t) {
+		
+		double current = getRainfall(t);
+		
+		for(int i = 0; i < time.length; i++) {
+			if(time[i] > t && rainfall[i] != current) return time[i];
+		}
+		
+		return Double.MAX_VALUE;
+
+	}
 
 	public void ReadInputFile(String FileName) {
 		
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Failure isolation of the column solver. A step which stops at dtMin without converging, or which leaves a non-finite
+ * value, is rolled back to the last good level (the old level and the initial guess of the step) and retried a bounded
+ * number of times with the fallback solver, every retry with a third of the last minimum step. When all the attempts
+ * fail the column holds its last good level over the step and is marked as degraded: from then on it is solved with a
+ * single attempt of the fallback solver. A column which spends its sub-step budget in a basin time step holds its
+ * state over the rest of the step in the same way, so a few stiff columns do not stall the basin. The rainfall of the
+ * held steps is dropped, the column adds it up in DiscardedForcing.
+ */
+public class ColumnFailurePolicy {
+
+    //Logger
+    private static Logger logger;
+
+	//Attempts with the fallback solver after a failed step, and sub-steps of a column in a basin time step (0 no limit)
+	public int MaxRetries;
+	public int MaxSubsteps;
+
+	//Solver of the retries and of the degraded columns
+	private Richards1D Fallback;
+
+	//Last good state: initial guess, ponding of the old level, boundary conditions and balance of the column
+	private double[] Guess;
+	private double TopOld;
+	private boolean TopType;
+	private boolean BotType;
+	private double TopValue;
+	private double BotValue;
+	private double BalanceError;
+	private double CumulativeBalanceError;
+	private double TruncationError;
+
+	//Retries done and steps held by this policy
+	public long Retries = 0;
+	public long Failures = 0;
+
+
+	public ColumnFailurePolicy(int maxRetries, int maxSubsteps, Richards1D fallback, int numNodes) {
+
+        //Create logger and log file
+        logger = Logger.getLogger("RiDI.ColumnFailurePolicy");
+
+        MaxRetries = maxRetries;
+        MaxSubsteps = maxSubsteps;
+        Fallback = fallback;
+        Guess = new double[numNodes];
+
+	}
+
+
+	/**
+	 * Time step of the column with the given solver (the fallback one for a degraded column), with rollback and retries.
+	 * Returns the length of the step done, the whole dt if the column holds its state.
+	 */
+	public double TimeStep(Richards1D solver, double TolTh, double TolH, int MaxIt, double dt, double dtMin, SoilColumnStaticProperties Static,
+			SoilColumnDynamicVariables Dynamic, double waterDepth, double precipitation, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		int nodesNumber = Static.nodeZ.length;
+		Save(nodesNumber, Dynamic);
+
+		int attempts = Dynamic.Degraded ? 1 : MaxRetries + 1;
+		double attemptMin = dtMin;
+		double dtDone = dt;
+		boolean accepted = false;
+
+		for(int attempt = 0; attempt < attempts && !accepted; attempt++) {
+
+			//Retry from the last good state
+			if(attempt > 0) {
+				Restore(nodesNumber, Dynamic);
+				attemptMin = attemptMin / 3.0;
+				Retries = Retries + 1;
+			}
+
+			Richards1D attemptSolver = (attempt > 0 || Dynamic.Degraded) ? Fallback : solver;
+			long iterations = attemptSolver.IterationCount;
+
+			dtDone = attemptSolver.timeStep(TolTh, TolH, MaxIt, dt, attemptMin, Static, Dynamic, waterDepth, precipitation, ProjectBottomBoundaryCondition);
+
+			//Iterations of the fallback solver are charged to the column solver
+			if(attemptSolver != solver) {
+				solver.IterationCount = solver.IterationCount + attemptSolver.IterationCount - iterations;
+				solver.LastIterations = attemptSolver.LastIterations;
+			}
+
+			accepted = attemptSolver.Converged && Finite(nodesNumber, Dynamic);
+
+		}
+
+		if(accepted) return dtDone;
+
+		//Rollback and hold
+		Restore(nodesNumber, Dynamic);
+		Hold(dt, precipitation, Static, Dynamic);
+
+		return dt;
+
+	}
+
+
+	/**
+	 * Keep the old level of the column over the step of length dt (no flow, the precipitation is dropped) and mark it as
+	 * degraded.
+	 */
+	public void Hold(double dt, double precipitation, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
+
+		int nodesNumber = Static.nodeZ.length;
+
+		System.arraycopy(Dynamic.SuctionOld, 0, Dynamic.SuctionNew, 0, nodesNumber);
+		System.arraycopy(Dynamic.SuctionOld, 0, Dynamic.SuctionTemp, 0, nodesNumber);
+		System.arraycopy(Dynamic.ThetaOld, 0, Dynamic.ThetaNew, 0, nodesNumber);
+		System.arraycopy(Dynamic.velOld, 0, Dynamic.velNew, 0, nodesNumber);
+
+		//Log
+		if(!Dynamic.Degraded) logger.warn("Column degraded: the step has not converged after " + MaxRetries + " retries, the column holds its state.");
+
+		Dynamic.Degraded = true;
+		Dynamic.DiscardedForcing = Dynamic.DiscardedForcing + precipitation * dt;
+		Failures = Failures + 1;
+
+	}
+
+
+	private void Save(int nodesNumber, SoilColumnDynamicVariables Dynamic) {
+
+		System.arraycopy(Dynamic.SuctionNew, 0, Guess, 0, nodesNumber);
+		TopOld = Dynamic.SuctionOld[nodesNumber - 1];
+		TopType = Dynamic.topBoundCondInfiltration;
+		BotType = Dynamic.botBoundCondInfiltration;
+		TopValue = Dynamic.topBoundaryCondition;
+		BotValue = Dynamic.botBoundaryCondition;
+		BalanceError = Dynamic.BalanceError;
+		CumulativeBalanceError = Dynamic.CumulativeBalanceError;
+		TruncationError = Dynamic.TruncationError;
+
+	}
+
+
+	/**
+	 * Back to the saved state. The histories of the predictor and of the multistep formula may hold the failed level,
+	 * they start again.
+	 */
+	private void Restore(int nodesNumber, SoilColumnDynamicVariables Dynamic) {
+
+		System.arraycopy(Guess, 0, Dynamic.SuctionNew, 0, nodesNumber);
+		System.arraycopy(Guess, 0, Dynamic.SuctionTemp, 0, nodesNumber);
+		System.arraycopy(Dynamic.ThetaOld, 0, Dynamic.ThetaNew, 0, nodesNumber);
+		Dynamic.SuctionOld[nodesNumber - 1] = TopOld;
+		Dynamic.topBoundCondInfiltration = TopType;
+		Dynamic.botBoundCondInfiltration = BotType;
+		Dynamic.topBoundaryCondition = TopValue;
+		Dynamic.botBoundaryCondition = BotValue;
+		Dynamic.BalanceError = BalanceError;
+		Dynamic.CumulativeBalanceError = CumulativeBalanceError;
+		Dynamic.TruncationError = TruncationError;
+		Dynamic.HistoryLevels = 0;
+		Dynamic.ThetaLevels = 0;
+
+	}
+
+
+	/**
+	 * No NaN or infinite suction, water content or velocity.
+	 */
+	private boolean Finite(int nodesNumber, SoilColumnDynamicVariables Dynamic) {
+
+		for(int i = 0; i < nodesNumber; i++) {
+			if(Double.isNaN(Dynamic.SuctionNew[i]) || Double.isInfinite(Dynamic.SuctionNew[i]) ||
+					Double.isNaN(Dynamic.ThetaNew[i]) || Double.isInfinite(Dynamic.ThetaNew[i]) ||
+					Double.isNaN(Dynamic.velNew[i]) || Double.isInfinite(Dynamic.velNew[i])) return false;
+		}
+
+		return true;
+
+	}
+
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib;
+
+/**
+ * Finite difference geometry of a column mesh: element lengths, control volume lengths of the nodes (half elements at
+ * both ends) and their inverses, so the consumers multiply instead of dividing. The arrays are computed once per mesh
+ * and shared by all the columns of a unit, they must not be modified.
+ */
+public class ColumnStencil {
+
+	//Element lengths (node i to node i + 1) and their inverses
+	public final double[] Dz;
+	public final double[] InvDz;
+
+	//Control volume lengths of the nodes and their inverses
+	public final double[] Volume;
+	public final double[] InvVolume;
+
+
+	public ColumnStencil(double[] nodeZ) {
+
+		int nodesNumber = nodeZ.length;
+
+		Dz = new double[nodesNumber - 1];
+		InvDz = new double[nodesNumber - 1];
+		for(int i = 0; i < nodesNumber - 1; i++) {
+			Dz[i] = nodeZ[i+1] - nodeZ[i];
+			InvDz[i] = 1.0 / Dz[i];
+		}
+
+		Volume = new double[nodesNumber];
+		InvVolume = new double[nodesNumber];
+		Volume[0] = Dz[0] / 2.0;
+		Volume[nodesNumber - 1] = Dz[nodesNumber - 2] / 2.0;
+		for(int i = 1; i < nodesNumber - 1; i++) {
+			Volume[i] = (Dz[i-1] + Dz[i]) / 2.0;
+		}
+		for(int i = 0; i < nodesNumber; i++) {
+			InvVolume[i] = 1.0 / Volume[i];
+		}
+
+	}
+
+}
@@ -77,7 +77,7 @@ public class Main {
             readInputData();
                                     
             //Create soil columns, basin raster and compute soil properties
-            ProjectBasin.CreateBasinDataStructures(Numerics.ColumnNodes);
+            ProjectBasin.CreateBasinDataStructures(Numerics.ColumnNodes, Numerics.MeshSpacing, Numerics.MeshGrading);
             
             //Print the profile properties of selected columns for output
             PrintSelectedColumnProfile();
@@ -86,7 +86,7 @@ public class Main {
     		BasinInitialConditions.ComputeInitialConditions();
     		    		
     		//Set the auxiliar arrays for Richards solver
-    		BasinVerticalInfiltration.InitializeAuxVariables(Numerics.maxPonding);
+    		BasinVerticalInfiltration.InitializeAuxVariables(Numerics);
             
             
             //Main temporal loop
@@ -230,6 +230,14 @@ public class Main {
     	//Time range
     	t = Numerics.Tini;
     	dt = Numerics.dt;
+    	
+    	//Time-parallel driver (basin time steps, fixed meshes and synchronous columns only)
+    	PararealDriver parareal = null;
+    	if(Numerics.PararealSlices > 1 && !Numerics.AdaptiveTimeStep && !Numerics.AsynchronousColumns && !Numerics.MeshAdaptation) {
+    		parareal = new PararealDriver(Numerics, ProjectBasin, BasinVerticalInfiltration, BasinClimate);
+    	} else if(Numerics.PararealSlices > 1) {
+    		logger.warn("PararealSlices = " + Numerics.PararealSlices + " ignored: the time-parallel driver needs AdaptiveTimeStep, AsynchronousColumns and MeshAdaptation set to false.");
+    	}
 
 
     	
@@ -239,10 +247,40 @@ public class Main {
     		//Selected columns output
     		if(Numerics.ResultOutput(t)) { 			    			
         		PrintDetailedResults(t, dt, iterationsCount);
+        		
+        		//Mass balance metric
+        		if(Numerics.MassBalanceMonitor) logger.info("Mass balance: largest accumulated closure error= " + BasinVerticalInfiltration.getBalanceError() + " m");
+        		
+        		//Degraded columns and dropped rainfall of the failure policy
+        		if(Numerics.FailurePolicy) BasinVerticalInfiltration.ReportFailures();
+    		}
+    		
+    		//Time-parallel window, the basin takes the state at the end of its next slice
+    		if(parareal != null) {
+    			if(!parareal.SliceAvailable()) parareal.SolveWindow(t);
+    			parareal.LoadNextSlice();
+    			
+    			//Screen
+    			System.out.println("Slice: iteration= " + iterationsCount + ", t= " + t + ", t_end= " + parareal.SliceTime + ", Tfin= " + Numerics.Tfin);
+    			
+    			dt = parareal.LastStep;
+    			t = parareal.SliceTime;
+    			iterationsCount = iterationsCount + parareal.SliceStepCount;
+    			
+    			//Compute stability factor
+    			BasinStabilityFactor.TimeStep(dt);
+    			continue;
     		}
     		
     		//Check time step size
     		dt = Numerics.CheckTimeStep(t);
+    		double tNext = t + dt;
+    		
+    		//Asynchronous columns, the basin only stops at the outputs and rainfall changes
+    		if(Numerics.AsynchronousColumns && t < Numerics.Tfin) {
+    			tNext = Numerics.SynchronisationTime(t, BasinClimate.getNextRainfallChange(t));
+    			dt = tNext - t;
+    		}
 
     		
     		//Log
@@ -262,7 +300,7 @@ public class Main {
     		BasinStabilityFactor.TimeStep(dt);
     		
     		//Update t
-    		t = t + dt;
+    		t = tNext;
     		
     		
     		iterationsCount++;
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Dynamic refinement and coarsening of the column mesh. An element is refined (split at its midpoint) when the jump of
+ * the water content across it or the error of the linear interpolation of the suction in it (from the change of the
+ * suction gradient at its nodes) is above its tolerance, and two elements are merged when both are well below them.
+ * Nodes on a change of soil type and the end nodes are never removed, and the column never gets more nodes than the
+ * solver workspace. The water content is remapped conservatively (lumped water volume) and the suction of the nodes it
+ * changed is found back from the retention curve, the other node variables are interpolated linearly.
+ */
+public class MeshAdaptation {
+
+    //Logger
+    private static Logger logger;
+
+	//Refinement tolerances: water content jump across an element (-) and suction interpolation error (m)
+	public double ThetaTolerance;
+	public double SuctionTolerance;
+
+	//Element size limits (m)
+	public double MinElementSize;
+	public double MaxElementSize;
+
+	//Nodes of the solver workspace
+	public int MaxNodes;
+
+	//Merging threshold, as a fraction of the refinement indicator
+	public double CoarseningFraction = 0.25;
+
+	//Soil types of the new nodes
+	private SoilsCatalog BasinSoilsCatalog;
+
+
+	public MeshAdaptation(double thetaTolerance, double suctionTolerance, double minElementSize, double maxElementSize, int maxNodes, SoilsCatalog AuxSoilsCatalog) {
+
+        //Create logger and log file
+        logger = Logger.getLogger("RiDI.MeshAdaptation");
+
+        //Log
+        logger.info("Call to MeshAdaptation(" + thetaTolerance + "," + suctionTolerance + "," + minElementSize + "," + maxElementSize + "," + maxNodes + ").");
+
+        ThetaTolerance = thetaTolerance;
+        SuctionTolerance = suctionTolerance;
+        MinElementSize = minElementSize;
+        MaxElementSize = maxElementSize;
+        MaxNodes = maxNodes;
+        BasinSoilsCatalog = AuxSoilsCatalog;
+
+	}
+
+
+	/**
+	 * Adapt the mesh of a column to its last converged state, returns true if the mesh changed.
+	 */
+	public boolean Adapt(SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
+
+		double[] z = Static.nodeZ;
+		int nodesNumber = z.length;
+
+		//Second derivative of the suction at the inner nodes
+		double[] curvature = new double[nodesNumber];
+		for(int i = 1; i < nodesNumber - 1; i++) {
+			double below = (Dynamic.SuctionOld[i] - Dynamic.SuctionOld[i-1]) / (z[i] - z[i-1]);
+			double above = (Dynamic.SuctionOld[i+1] - Dynamic.SuctionOld[i]) / (z[i+1] - z[i]);
+			curvature[i] = 2.0 * Math.abs(above - below) / (z[i+1] - z[i-1]);
+		}
+		
+		//Refinement indicator of every element
+		final double[] indicator = new double[nodesNumber - 1];
+		for(int e = 0; e < nodesNumber - 1; e++) {
+			double length = z[e+1] - z[e];
+			indicator[e] = Indicator(Dynamic, e, e + 1, 0.125 * length * length * Math.max(curvature[e], curvature[e+1]));
+		}
+
+		//Elements to split, the worst first
+		ArrayList<Integer> refine = new ArrayList<Integer>();
+		for(int e = 0; e < nodesNumber - 1; e++) {
+			if(indicator[e] > 1.0 && z[e+1] - z[e] >= 2.0 * MinElementSize) refine.add(e);
+		}
+		Collections.sort(refine, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(indicator[b], indicator[a]);
+			}
+		});
+		boolean[] split = new boolean[nodesNumber - 1];
+		for(int e : refine) split[e] = true;
+
+		//Nodes to remove, never two neighbours and never next to a split element
+		boolean[] removed = new boolean[nodesNumber];
+		int removedNodes = 0;
+		for(int i = 1; i < nodesNumber - 1; i++) {
+			if(removed[i-1] || split[i-1] || split[i]) continue;
+			if(Static.nodeSoilType[i] != Static.nodeSoilType[i-1] || Static.nodeSoilType[i] != Static.nodeSoilType[i+1]) continue;
+			if(z[i+1] - z[i-1] > MaxElementSize) continue;
+			double error = 0.5 * (z[i] - z[i-1]) * (z[i+1] - z[i]) * curvature[i];
+			if(Math.max(indicator[i-1], indicator[i]) < CoarseningFraction && Indicator(Dynamic, i - 1, i + 1, error) < CoarseningFraction) {
+				removed[i] = true;
+				removedNodes++;
+			}
+		}
+
+		//Splits within the solver workspace
+		int splits = Math.max(0, Math.min(refine.size(), MaxNodes - nodesNumber + removedNodes));
+		for(int r = splits; r < refine.size(); r++) split[refine.get(r)] = false;
+
+		if(splits == 0 && removedNodes == 0) return false;
+
+		//New nodes: old node (index >= 0) or midpoint of the old element -1-index
+		int newNodes = nodesNumber - removedNodes + splits;
+		int[] source = new int[newNodes];
+		int k = 0;
+		for(int i = 0; i < nodesNumber; i++) {
+			if(!removed[i]) source[k++] = i;
+			if(i < nodesNumber - 1 && split[i]) source[k++] = -1 - i;
+		}
+
+		double[] newZ = Remap(z, source);
+
+		//Soil types, the soil of a midpoint is found by its coordinate
+		SoilType[] newSoilType = new SoilType[newNodes];
+		int columnUnit = splits > 0 ? Static.getColumnUnit() : 0;
+		for(k = 0; k < newNodes; k++) {
+			if(source[k] >= 0) {
+				newSoilType[k] = Static.nodeSoilType[source[k]];
+			} else {
+				newSoilType[k] = BasinSoilsCatalog.getSoilType(UnitsCatalog.getSoilNameByZ(columnUnit, newZ[k]));
+			}
+		}
+
+		//Water content, the midpoints keep the lumped volume and the volume of a removed node goes to its neighbours
+		double[] newThetaOld = Remap(Dynamic.ThetaOld, source);
+		double[] newThetaNew = Remap(Dynamic.ThetaNew, source);
+		boolean[] changed = new boolean[newNodes];
+		for(k = 0; k < newNodes; k++) changed[k] = source[k] < 0;
+		k = 0;
+		for(int i = 0; i < nodesNumber; i++) {
+			if(removed[i]) {
+				ConserveVolume(Dynamic.ThetaOld, newThetaOld, z, newZ, i, k);
+				ConserveVolume(Dynamic.ThetaNew, newThetaNew, z, newZ, i, k);
+				changed[k-1] = true;
+				changed[k] = true;
+			} else {
+				k++;
+				if(i < nodesNumber - 1 && split[i]) k++;
+			}
+		}
+
+		//Log
+		if(logger.isDebugEnabled()) logger.debug("Mesh adaptation: " + nodesNumber + " nodes, " + splits + " split elements, " + removedNodes + " removed nodes.");
+
+		Static.setColumnNodes(newZ, newSoilType);
+
+		Dynamic.ThetaOld = newThetaOld;
+		Dynamic.ThetaNew = newThetaNew;
+		Dynamic.SuctionOld = Remap(Dynamic.SuctionOld, source);
+		Dynamic.SuctionTemp = Remap(Dynamic.SuctionTemp, source);
+		Dynamic.SuctionNew = Remap(Dynamic.SuctionNew, source);
+		Dynamic.Saturation = Remap(Dynamic.Saturation, source);
+		Dynamic.HydConductivity = Remap(Dynamic.HydConductivity, source);
+		Dynamic.Capacity = Remap(Dynamic.Capacity, source);
+		Dynamic.velOld = Remap(Dynamic.velOld, source);
+		Dynamic.velNew = Remap(Dynamic.velNew, source);
+		Dynamic.FOS_unsat = Remap(Dynamic.FOS_unsat, source);
+		Dynamic.FOS_sat = Remap(Dynamic.FOS_sat, source);
+		Dynamic.SuctionStress = Remap(Dynamic.SuctionStress, source);
+		if(Dynamic.SuctionHistory1 != null) {
+			Dynamic.SuctionHistory1 = Remap(Dynamic.SuctionHistory1, source);
+			Dynamic.SuctionHistory2 = Remap(Dynamic.SuctionHistory2, source);
+		}
+		if(Dynamic.ThetaHistory1 != null) {
+			Dynamic.ThetaHistory1 = Remap(Dynamic.ThetaHistory1, source);
+			Dynamic.ThetaHistory2 = Remap(Dynamic.ThetaHistory2, source);
+		}
+
+		//Suction and hydraulic properties of the changed nodes back on the retention curve of the remapped water content
+		double[] tableTheta = new double[newNodes];
+		for(k = 0; k < newNodes; k++) {
+			if(!changed[k]) continue;
+			SoilType soil = newSoilType[k];
+			Dynamic.SuctionOld[k] = RetentionSuction(soil, newThetaOld[k], Dynamic.SuctionOld[k]);
+			Dynamic.SuctionNew[k] = RetentionSuction(soil, newThetaNew[k], Dynamic.SuctionNew[k]);
+			Dynamic.SuctionTemp[k] = Dynamic.SuctionNew[k];
+			soil.InterpolateValues(Dynamic.SuctionNew[k], Dynamic.SuctionNew[k], Dynamic.HydConductivity, Dynamic.Capacity, tableTheta, Dynamic.Saturation, k, 0.0);
+		}
+
+		return true;
+
+	}
+
+
+	/**
+	 * Largest of the water content jump between nodes a and b and the suction interpolation error, normalised by their tolerances.
+	 */
+	private double Indicator(SoilColumnDynamicVariables Dynamic, int a, int b, double suctionError) {
+
+		double theta = Math.abs(Dynamic.ThetaOld[b] - Dynamic.ThetaOld[a]) / ThetaTolerance;
+
+		return Math.max(theta, suctionError / SuctionTolerance);
+
+	}
+
+
+	/**
+	 * Suction of the given water content on the retention curve of the soil, the interpolated suction is kept when the
+	 * water content is saturated (raised to the saturated suction) or at the residual value.
+	 */
+	private double RetentionSuction(SoilType soil, double theta, double suction) {
+
+		if(theta >= soil.qs) return Math.max(suction, soil.SaturatedSuction);
+		if(theta <= soil.qr) return suction;
+
+		return soil.Suction((theta - soil.qr) / (soil.qs - soil.qr));
+
+	}
+
+
+	/**
+	 * Values on the new nodes, the midpoints take the mean of the element ends.
+	 */
+	private double[] Remap(double[] values, int[] source) {
+
+		double[] newValues = new double[source.length];
+
+		for(int k = 0; k < source.length; k++) {
+			if(source[k] >= 0) {
+				newValues[k] = values[source[k]];
+			} else {
+				newValues[k] = 0.5 * (values[-1 - source[k]] + values[-source[k]]);
+			}
+		}
+
+		return newValues;
+
+	}
+
+
+	/**
+	 * Water volume of the removed node i (between the new nodes k-1 and k) lost by the merged element, added as an equal
+	 * water content change to both neighbours.
+	 */
+	private void ConserveVolume(double[] theta, double[] newTheta, double[] z, double[] newZ, int i, int k) {
+
+		double below = z[i] - z[i-1];
+		double above = z[i+1] - z[i];
+
+		double oldVolume = 0.5 * (theta[i-1] * below + theta[i] * (below + above) + theta[i+1] * above);
+		double newVolume = 0.5 * (theta[i-1] + theta[i+1]) * (below + above);
+
+		//Control volumes of the neighbours in the new mesh
+		double volumeBelow = 0.5 * (newZ[k] - newZ[k-1]) + (k > 1 ? 0.5 * (newZ[k-1] - newZ[k-2]) : 0.0);
+		double volumeAbove = 0.5 * (newZ[k] - newZ[k-1]) + (k < newZ.length - 1 ? 0.5 * (newZ[k+1] - newZ[k]) : 0.0);
+
+		double delta = (oldVolume - newVolume) / (volumeBelow + volumeAbove);
+		newTheta[k-1] = newTheta[k-1] + delta;
+		newTheta[k] = newTheta[k] + delta;
+
+	}
+
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Iteration policy of the Picard scheme: Anderson acceleration over the last iterates, relaxation of the hydraulic
+ * properties adapted to the contraction of the residual, and a convergence test on the residual history instead of
+ * a minimum number of iterations. The residual of an iterate is the normalised increment of the Picard map.
+ * Every solver owns its policy, the history is a workspace of the column being solved.
+ */
+public class NonlinearIterationPolicy {
+
+    //Logger
+    private static Logger logger;
+
+	//Number of stored differences of the Anderson mixing and regularisation of its least squares problem
+	public int Depth = 3;
+	public double Regularisation = 1.0E-10;
+
+	//Weight of the previous iterate in the hydraulic properties (0.1 is the fixed Picard relaxation) and its range
+	public double Relaxation = 0.1;
+	public double MinRelaxation = 0.0;
+	public double MaxRelaxation = 0.5;
+
+	//Residual accepted without an estimate of the contraction
+	public double AbsoluteResidual = 0.1;
+
+	//Last iterate and residual, differences of the stored iterates and residuals
+	private double lastIterate[];
+	private double lastResidual[];
+	private double iterateDifferences[][];
+	private double residualDifferences[][];
+	private int stored;
+	private int next;
+	private boolean history;
+	private double lastNorm;
+
+	//Least squares workspace
+	private double normalMatrix[][];
+	private double gamma[];
+	private double residual[];
+
+
+	public NonlinearIterationPolicy(int nodesNumber) {
+
+        //Create logger and log file
+        logger = Logger.getLogger("RiDI.NonlinearIterationPolicy");
+
+        lastIterate = new double[nodesNumber];
+        lastResidual = new double[nodesNumber];
+        iterateDifferences = new double[Depth][nodesNumber];
+        residualDifferences = new double[Depth][nodesNumber];
+        residual = new double[nodesNumber];
+        normalMatrix = new double[Depth][Depth + 1];
+        gamma = new double[Depth];
+
+	}
+
+
+	/**
+	 * New time step (or restart after a time step reduction).
+	 */
+	public void Reset() {
+
+		stored = 0;
+		next = 0;
+		history = false;
+		lastNorm = 0.0;
+		Relaxation = 0.1;
+
+	}
+
+
+	/**
+	 * Convergence of an iterate with residual norm (largest increment normalised by the tolerances). The increment test
+	 * has to pass and the error estimated from the contraction rate has to be below the tolerance. A change of the boundary
+	 * conditions changes the Picard map and clears the Anderson history.
+	 */
+	public boolean Converged(boolean incrementTest, double norm, boolean boundarySwitch) {
+
+		double rate = lastNorm > 0.0 ? norm / lastNorm : -1.0;
+		lastNorm = norm;
+
+		//Relaxation of the properties from the contraction
+		if(rate > 1.0) {
+			Relaxation = Math.min(Math.max(2.0 * Relaxation, 0.05), MaxRelaxation);
+			stored = 0;
+			history = false;
+		} else if(rate >= 0.0 && rate < 0.3) {
+			Relaxation = Math.max(0.5 * Relaxation, MinRelaxation);
+		}
+
+		if(boundarySwitch) {
+			stored = 0;
+			history = false;
+		}
+
+		//Log
+		if(logger.isTraceEnabled()) logger.trace("Iteration policy: residual= " + norm + ", rate= " + rate + ", relaxation= " + Relaxation);
+
+		if(!incrementTest) return false;
+		if(norm <= AbsoluteResidual) return true;
+
+		return rate >= 0.0 && rate < 1.0 && norm * rate / (1.0 - rate) <= 1.0;
+
+	}
+
+
+	/**
+	 * Anderson mixing of the Picard iterate (iterate, suction in) and its image (image, suction out) between the nodes first and last,
+	 * the result is written in image.
+	 */
+	public void Accelerate(double[] iterate, double[] image, int first, int last) {
+
+		for (int i = first; i <= last; i++) residual[i] = image[i] - iterate[i];
+
+		//Differences with the last iterate
+		if(history) {
+			for (int i = first; i <= last; i++) {
+				iterateDifferences[next][i] = iterate[i] - lastIterate[i];
+				residualDifferences[next][i] = residual[i] - lastResidual[i];
+			}
+			next = (next + 1) % Depth;
+			stored = Math.min(stored + 1, Depth);
+		}
+
+		System.arraycopy(iterate, first, lastIterate, first, last - first + 1);
+		System.arraycopy(residual, first, lastResidual, first, last - first + 1);
+		history = true;
+
+		if(stored == 0) return;
+
+		//Normal equations of min |residual - residualDifferences * gamma|
+		for (int a = 0; a < stored; a++) {
+			for (int b = a; b < stored; b++) {
+				double sum = 0.0;
+				for (int i = first; i <= last; i++) sum = sum + residualDifferences[a][i] * residualDifferences[b][i];
+				normalMatrix[a][b] = sum;
+				normalMatrix[b][a] = sum;
+			}
+			double sum = 0.0;
+			for (int i = first; i <= last; i++) sum = sum + residualDifferences[a][i] * residual[i];
+			normalMatrix[a][stored] = sum;
+			normalMatrix[a][a] = normalMatrix[a][a] * (1.0 + Regularisation) + Regularisation;
+		}
+
+		if(!SolveNormalEquations()) return;
+
+		//Mixed iterate
+		for (int i = first; i <= last; i++) {
+			double value = image[i];
+			for (int a = 0; a < stored; a++) value = value - gamma[a] * (iterateDifferences[a][i] + residualDifferences[a][i]);
+			if(Double.isNaN(value) || Double.isInfinite(value)) return;
+			residual[i] = value;
+		}
+		System.arraycopy(residual, first, image, first, last - first + 1);
+
+	}
+
+
+	/**
+	 * Gauss elimination of the (small, symmetric) normal equations, false if singular.
+	 */
+	private boolean SolveNormalEquations() {
+
+		for (int a = 0; a < stored; a++) {
+			if(normalMatrix[a][a] <= 0.0) return false;
+			for (int b = a + 1; b < stored; b++) {
+				double factor = normalMatrix[b][a] / normalMatrix[a][a];
+				for (int c = a; c <= stored; c++) normalMatrix[b][c] = normalMatrix[b][c] - factor * normalMatrix[a][c];
+			}
+		}
+
+		for (int a = stored - 1; a >= 0; a--) {
+			double sum = normalMatrix[a][stored];
+			for (int b = a + 1; b < stored; b++) sum = sum - normalMatrix[a][b] * gamma[b];
+			gamma[a] = sum / normalMatrix[a][a];
+		}
+
+		return true;
+
+	}
+
+}
@@ -48,6 +48,42 @@ public class NumericalModelParameters {
 	public String initialConditions;
 	public double maxPonding;
 	
+	//Solver options (optional lines after the output points, defaults keep the original behaviour)
+	public int BatchColumns = 0;
+	public String NonlinearSolver = "Picard";
+	public boolean AdaptiveTimeStep = false;
+	public double dtMax = 0.0;
+	public int Threads = 1;
+	public String ColumnScheduling = "Cost";
+	public boolean AsynchronousColumns = false;
+	public double QuiescentTolerance = 0.0;
+	public double MaxSleepTime = 3600.0;
+	public boolean HydrologyGroups = false;
+	public String Predictor = "Linear";
+	public String IterationPolicy = "Fixed";
+	public String Discretisation = "Capacity";
+	public boolean MassBalanceMonitor = false;
+	public double MassBalanceTolerance = 0.0;
+	public boolean TransformedVariable = false;
+	public double MeshSpacing = 0.0;
+	public double MeshGrading = 1.0;
+	public boolean MeshAdaptation = false;
+	public double RefinementTheta = 0.01;
+	public double RefinementSuction = 0.01;
+	public double MinElementSize = 0.0025;
+	public double MaxElementSize = 0.1;
+	public String TimeIntegration = "Euler";
+	public double TruncationTolerance = 0.0;
+	public boolean RegimeFastPaths = false;
+	public boolean FailurePolicy = false;
+	public int FailureRetries = 2;
+	public String FallbackSolver = "Newton";
+	public int MaxSubsteps = 1000;
+	public int PartitionedSolverNodes = 10000;
+	public int PararealSlices = 0;
+	public double PararealTolerance = 0.001;
+	public boolean FusedKernel = true;
+	
 	//Coordinates of the vertical column output points
 	int numberOfPoints = 10;
 	public double[] Xcoord = new double[numberOfPoints];
@@ -157,6 +193,176 @@ public class NumericalModelParameters {
                 	Ycoord[i] = Double.parseDouble(tokens[2]);//(m)
                 }            	
             }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                BatchColumns = Integer.parseInt(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                NonlinearSolver = tokens[1];//(Picard or Newton)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                AdaptiveTimeStep = Boolean.parseBoolean(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                dtMax = Double.parseDouble(tokens[2]);//(s)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                Threads = Integer.parseInt(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                ColumnScheduling = tokens[1];//(Cost or Tiles)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                AsynchronousColumns = Boolean.parseBoolean(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                QuiescentTolerance = Double.parseDouble(tokens[2]);//(-)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                MaxSleepTime = Double.parseDouble(tokens[2]);//(s)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                HydrologyGroups = Boolean.parseBoolean(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                Predictor = tokens[1];//(Linear, Quadratic or Adaptive)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                IterationPolicy = tokens[1];//(Fixed or Anderson)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                Discretisation = tokens[1];//(Capacity or MixedForm)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                MassBalanceMonitor = Boolean.parseBoolean(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                MassBalanceTolerance = Double.parseDouble(tokens[2]);//(m)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                TransformedVariable = Boolean.parseBoolean(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                MeshSpacing = Double.parseDouble(tokens[2]);//(m)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                MeshGrading = Double.parseDouble(tokens[2]);//(-)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                MeshAdaptation = Boolean.parseBoolean(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                RefinementTheta = Double.parseDouble(tokens[2]);//(-)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                RefinementSuction = Double.parseDouble(tokens[2]);//(m)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                MinElementSize = Double.parseDouble(tokens[2]);//(m)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                MaxElementSize = Double.parseDouble(tokens[2]);//(m)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                TimeIntegration = tokens[1];//(Euler or BDF2)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                TruncationTolerance = Double.parseDouble(tokens[2]);//(-)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                RegimeFastPaths = Boolean.parseBoolean(tokens[1]);
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                FailurePolicy = Boolean.parseBoolean(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                FailureRetries = Integer.parseInt(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                FallbackSolver = tokens[1];//(Picard or Newton)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                MaxSubsteps = Integer.parseInt(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                PartitionedSolverNodes = Integer.parseInt(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                PararealSlices = Integer.parseInt(tokens[1]);//()
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                PararealTolerance = Double.parseDouble(tokens[2]);//(-)
+            }
+            
+            if ((text = reader.readLine()) != null) {
+                String[] tokens = text.split(delims);
+                FusedKernel = Boolean.parseBoolean(tokens[1]);//()
+            }
                     
         } catch (FileNotFoundException ex) {
             logger.error("Exception!",ex); //.printStackTrace();
@@ -172,6 +378,12 @@ public class NumericalModelParameters {
             }
         }
         
+        //Maximum local time step, by default the global one
+        if(dtMax <= 0.0) dtMax = dt;
+        
+        //Asynchronous columns advance with their own adaptive step
+        if(AsynchronousColumns) AdaptiveTimeStep = true;
+        
         //Compute result output timestep
         ComputeResultOutputTimeStep();
         NextResultOutput = 0.0;
@@ -219,6 +431,44 @@ public class NumericalModelParameters {
 		
 	}
 	
+	/**
+	 * @param Time
+	 * @return time of the first result output after Time
+	 */
+	public double NextOutputTime(double Time) {
+		
+		return this.OutStep * (((int)Math.floor(Time / this.OutStep + 1.0E-9)) + 1);
+		
+	}
+	
+	/**
+	 * @param Time
+	 * @param nextForcingChange
+	 * @return next time all the columns have to reach together (result output, forcing change or end of the simulation)
+	 */
+	public double SynchronisationTime(double Time, double nextForcingChange) {
+		
+		double syncTime = Math.min(Math.min(NextOutputTime(Time), nextForcingChange), this.Tfin);
+		
+		return syncTime;
+		
+	}
+	
+	/**
+	 * @return time from which ResultOutput gives the next output
+	 */
+	public double getNextResultOutput() {
+		
+		return NextResultOutput;
+		
+	}
+	
+	public double getOutStep() {
+		
+		return OutStep;
+		
+	}
+	
 	public boolean ResultOutput(double Time) {
 		
 		//Log
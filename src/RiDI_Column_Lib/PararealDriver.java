@@ -0,0 +1,418 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Time-parallel (Parareal) driver of the main loop. The simulation is split in windows of Slices time slices, a slice
+ * being the basin steps from one result output to the next. The coarse propagator (COARSE_STEPS steps per slice, cut at
+ * the rainfall changes, loose tolerances) predicts the state at the end of every slice of the window, then every
+ * iteration solves all the slices at once with the fine propagator (the basin time steps) and corrects the states in
+ * sequence: U(n+1) = G(U(n)) + F(U_old(n)) - G(U_old(n)), on the suction, water content and ponding depth. The iterations stop when
+ * the water content at the slice ends changes less than Tolerance, after k iterations the first k slices are exact.
+ * The columns are independent, so every propagation is also split by column. The main loop then takes the state of the
+ * slice ends one after the other and prints its results as usual.
+ */
+public class PararealDriver {
+
+    //Logger
+    private static Logger logger;
+
+	//Slices of a window and water content change of the converged slice ends
+	public int Slices;
+	public double Tolerance;
+
+	//Steps per slice and factor of the tolerances of the coarse propagator
+	private static final int COARSE_STEPS = 12;
+	private static final double COARSE_FACTOR = 10.0;
+
+	private NumericalModelParameters Numerics;
+	private Basin ProjectBasin;
+	private VerticalInfiltration BasinVerticalInfiltration;
+	private Climate BasinClimate;
+
+	//Cells of the columns
+	private int[] cellX;
+	private int[] cellY;
+
+	//Workers and their solvers (the slices are solved in sequence without workers)
+	private ForkJoinPool pool;
+	private ThreadLocal<Richards1D> workerSolver;
+
+	//Slices of the window: start and end time, basin steps, start and length of the last step
+	private int windowSlices = 0;
+	private double[] SliceStart;
+	private double[] SliceEnd;
+	private int[] SliceSteps;
+	private double[] LastStepStart;
+	private double[] LastStepSize;
+
+	//States at the slice ends (State[0] the window start), fine and coarse propagations of the last iteration
+	private SoilColumnDynamicVariables[][] State;
+	private SoilColumnDynamicVariables[][] Fine;
+	private SoilColumnDynamicVariables[][] Coarse;
+	private SoilColumnDynamicVariables[] CoarseNew;
+	private double[][] StateDepth;
+	private double[][] FineDepth;
+	private double[][] CoarseDepth;
+	private double[] CoarseNewDepth;
+
+	//Next slice taken by the main loop
+	private int nextSlice = 0;
+
+	//State of the main loop after the last slice taken: time, basin steps and last time step
+	public double SliceTime;
+	public int SliceStepCount;
+	public double LastStep;
+
+	//Iterations done
+	public long Iterations = 0;
+
+
+	public PararealDriver(NumericalModelParameters Numerics, Basin ProjectBasin, VerticalInfiltration BasinVerticalInfiltration, Climate BasinClimate) {
+
+        //Create logger and log file
+        logger = Logger.getLogger("RiDI.PararealDriver");
+
+        this.Numerics = Numerics;
+        this.ProjectBasin = ProjectBasin;
+        this.BasinVerticalInfiltration = BasinVerticalInfiltration;
+        this.BasinClimate = BasinClimate;
+        Slices = Numerics.PararealSlices;
+        Tolerance = Numerics.PararealTolerance;
+
+        //Cells with a column
+        ArrayList<int[]> cells = new ArrayList<int[]>();
+        for (int y = 0; y < ProjectBasin.BasinSoilColumns[0].length; y++) {
+        	for (int x = 0; x < ProjectBasin.BasinSoilColumns.length; x++) {
+        		if(ProjectBasin.BasinSoilColumns[x][y] != null) cells.add(new int[] {x, y});
+        	}
+        }
+        int columns = cells.size();
+        cellX = new int[columns];
+        cellY = new int[columns];
+        for (int c = 0; c < columns; c++) {
+        	cellX[c] = cells.get(c)[0];
+        	cellY[c] = cells.get(c)[1];
+        }
+
+        SliceStart = new double[Slices];
+        SliceEnd = new double[Slices];
+        SliceSteps = new int[Slices];
+        LastStepStart = new double[Slices];
+        LastStepSize = new double[Slices];
+
+        State = NewStates(Slices + 1, columns);
+        Fine = NewStates(Slices, columns);
+        Coarse = NewStates(Slices, columns);
+        CoarseNew = NewStates(1, columns)[0];
+        StateDepth = new double[Slices + 1][columns];
+        FineDepth = new double[Slices][columns];
+        CoarseDepth = new double[Slices][columns];
+        CoarseNewDepth = new double[columns];
+
+        //Solver workspace per worker
+        if(Numerics.Threads > 1) pool = new ForkJoinPool(Numerics.Threads);
+        final VerticalInfiltration infiltration = BasinVerticalInfiltration;
+        workerSolver = new ThreadLocal<Richards1D>() {
+        	@Override
+        	protected Richards1D initialValue() {
+        		return infiltration.CreateSolver();
+        	}
+        };
+
+        //Log
+        logger.info("Parareal driver: " + Slices + " slices per window, " + columns + " columns, tolerance " + Tolerance + ".");
+
+	}
+
+
+	/**
+	 * A slice of the current window is left for the main loop.
+	 */
+	public boolean SliceAvailable() {
+
+		return nextSlice < windowSlices;
+
+	}
+
+
+	/**
+	 * Solve the window of slices starting at time t, with the basin state as initial state.
+	 */
+	public void SolveWindow(double t) {
+
+		//Log
+		logger.info("Call to SolveWindow(" + t + ").");
+
+		CreateSlices(t);
+		int columns = cellX.length;
+
+		//Basin state at the window start
+		for (int c = 0; c < columns; c++) {
+			State[0][c].CopyState(ProjectBasin.BasinSoilColumns[cellX[c]][cellY[c]].ColumnDynamicVariables);
+			StateDepth[0][c] = ProjectBasin.DepthRaster.getCellValueAsDouble(cellX[c], cellY[c]);
+		}
+
+		//Coarse prediction
+		for (int n = 0; n < windowSlices; n++) {
+			Propagate(n, n + 1, true, Coarse, CoarseDepth, 0);
+			CopyStates(Coarse[n], CoarseDepth[n], State[n + 1], StateDepth[n + 1]);
+		}
+
+		//Corrections, slice k - 1 starts from an exact state
+		for (int k = 1; k <= windowSlices; k++) {
+
+			Propagate(k - 1, windowSlices, false, Fine, FineDepth, 0);
+
+			//Exact end of the first slice
+			double change = Change(Fine[k - 1], State[k]);
+			CopyStates(Fine[k - 1], FineDepth[k - 1], State[k], StateDepth[k]);
+
+			for (int n = k; n < windowSlices; n++) {
+
+				//Coarse propagation of the corrected state, then U(n+1) = G(U(n)) + F(U_old(n)) - G(U_old(n))
+				Propagate(n, n + 1, true, new SoilColumnDynamicVariables[][] {CoarseNew}, new double[][] {CoarseNewDepth}, n);
+				for (int c = 0; c < columns; c++) {
+					SoilColumnDynamicVariables end = State[n + 1][c];
+					change = Math.max(change, Correct(Fine[n][c], CoarseNew[c], Coarse[n][c], end));
+					StateDepth[n + 1][c] = Math.max(FineDepth[n][c] + CoarseNewDepth[c] - CoarseDepth[n][c], 0.0);
+				}
+				CopyStates(CoarseNew, CoarseNewDepth, Coarse[n], CoarseDepth[n]);
+			}
+
+			Iterations = Iterations + 1;
+
+			//Log
+			logger.info("Parareal iteration " + k + ": largest water content change of the slice ends= " + change);
+
+			if(change < Tolerance) break;
+		}
+
+		nextSlice = 0;
+
+	}
+
+
+	/**
+	 * Give the basin the state at the end of the next slice of the window.
+	 */
+	public void LoadNextSlice() {
+
+		int n = nextSlice;
+		for (int c = 0; c < cellX.length; c++) {
+			BasinVerticalInfiltration.LoadColumnState(cellX[c], cellY[c], State[n + 1][c], StateDepth[n + 1][c]);
+		}
+
+		//Rainfall of the last step, as left by the main loop
+		BasinVerticalInfiltration.updateRainfall(LastStepStart[n], BasinClimate);
+
+		SliceTime = SliceEnd[n];
+		SliceStepCount = SliceSteps[n];
+		LastStep = LastStepSize[n];
+		nextSlice = nextSlice + 1;
+
+	}
+
+
+	/**
+	 * Slices of the window: the basin clock of the main loop is walked up to the result outputs, or beyond Tfin.
+	 */
+	private void CreateSlices(double t) {
+
+		double nextOutput = Numerics.getNextResultOutput();
+		double time = t;
+		windowSlices = 0;
+
+		while(windowSlices < Slices && time <= Numerics.Tfin) {
+
+			int n = windowSlices;
+			SliceStart[n] = time;
+			SliceSteps[n] = 0;
+
+			while(true) {
+				double dt = Numerics.CheckTimeStep(time);
+				LastStepStart[n] = time;
+				LastStepSize[n] = dt;
+				time = time + dt;
+				SliceSteps[n] = SliceSteps[n] + 1;
+
+				if(time > Numerics.Tfin) break;
+				if(time >= nextOutput) {
+					nextOutput = nextOutput + Numerics.getOutStep();
+					break;
+				}
+			}
+
+			SliceEnd[n] = time;
+			windowSlices = windowSlices + 1;
+		}
+
+	}
+
+
+	/**
+	 * Propagate the states of slices first to last - 1, the end state of slice n into target[n - targetFirst].
+	 */
+	private void Propagate(int first, int last, boolean coarse, SoilColumnDynamicVariables[][] target, double[][] targetDepth, int targetFirst) {
+
+		int columns = cellX.length;
+		PropagationTask task = new PropagationTask(first, 0, (last - first) * columns, coarse, target, targetDepth, targetFirst);
+
+		if(pool != null) {
+			pool.invoke(task);
+		} else {
+			task.Run(0, (last - first) * columns);
+		}
+
+	}
+
+
+	/**
+	 * Fork-join task over (slice, column) pairs, split in halves down to one pair.
+	 */
+	private class PropagationTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private int firstSlice;
+		private int first;
+		private int last;
+		private boolean coarse;
+		private SoilColumnDynamicVariables[][] target;
+		private double[][] targetDepth;
+		private int targetFirst;
+
+		PropagationTask(int firstSlice, int first, int last, boolean coarse, SoilColumnDynamicVariables[][] target, double[][] targetDepth, int targetFirst) {
+			this.firstSlice = firstSlice;
+			this.first = first;
+			this.last = last;
+			this.coarse = coarse;
+			this.target = target;
+			this.targetDepth = targetDepth;
+			this.targetFirst = targetFirst;
+		}
+
+		@Override
+		protected void compute() {
+
+			if(last - first <= 1) {
+				Run(first, last);
+				return;
+			}
+
+			int middle = (first + last) >>> 1;
+			invokeAll(new PropagationTask(firstSlice, first, middle, coarse, target, targetDepth, targetFirst),
+					new PropagationTask(firstSlice, middle, last, coarse, target, targetDepth, targetFirst));
+
+		}
+
+		void Run(int first, int last) {
+
+			Richards1D solver = workerSolver.get();
+			int columns = cellX.length;
+
+			for (int pair = first; pair < last; pair++) {
+				int s = pair / columns;
+				int c = pair % columns;
+				int n = firstSlice + s;
+				SoilColumnDynamicVariables state = target[n - targetFirst][c];
+
+				state.CopyState(State[n][c]);
+				targetDepth[n - targetFirst][c] = BasinVerticalInfiltration.PropagateColumn(solver, cellX[c], cellY[c], state, StateDepth[n][c], SliceStart[n], SliceEnd[n],
+						coarse, COARSE_STEPS, COARSE_FACTOR, BasinClimate);
+			}
+
+		}
+	}
+
+
+	/**
+	 * Corrected state end = fine + coarseNew - coarseOld (suction and water content levels, the rest of the state from the
+	 * fine propagation). Returns the largest change of water content of the end state.
+	 */
+	private double Correct(SoilColumnDynamicVariables fine, SoilColumnDynamicVariables coarseNew, SoilColumnDynamicVariables coarseOld,
+			SoilColumnDynamicVariables end) {
+
+		//Change from the previous iterate
+		double change = 0.0;
+		for (int i = 0; i < end.ThetaNew.length; i++) {
+			double theta = fine.ThetaNew[i] + coarseNew.ThetaNew[i] - coarseOld.ThetaNew[i];
+			change = Math.max(change, Math.abs(theta - end.ThetaNew[i]));
+		}
+
+		//Coarse correction of the levels of the fine state
+		end.CopyState(fine);
+		for (int i = 0; i < end.SuctionNew.length; i++) {
+			double dh = coarseNew.SuctionNew[i] - coarseOld.SuctionNew[i];
+			double dTheta = coarseNew.ThetaNew[i] - coarseOld.ThetaNew[i];
+			end.SuctionNew[i] = end.SuctionNew[i] + dh;
+			end.SuctionOld[i] = end.SuctionOld[i] + dh;
+			end.SuctionTemp[i] = end.SuctionTemp[i] + dh;
+			end.ThetaNew[i] = end.ThetaNew[i] + dTheta;
+			end.ThetaOld[i] = end.ThetaOld[i] + dTheta;
+		}
+
+		return change;
+
+	}
+
+
+	/**
+	 * Largest water content change between two sets of column states.
+	 */
+	private double Change(SoilColumnDynamicVariables[] a, SoilColumnDynamicVariables[] b) {
+
+		double change = 0.0;
+		for (int c = 0; c < a.length; c++) {
+			for (int i = 0; i < a[c].ThetaNew.length; i++) {
+				change = Math.max(change, Math.abs(a[c].ThetaNew[i] - b[c].ThetaNew[i]));
+			}
+		}
+
+		return change;
+
+	}
+
+
+	private static void CopyStates(SoilColumnDynamicVariables[] source, double[] sourceDepth, SoilColumnDynamicVariables[] target, double[] targetDepth) {
+
+		for (int c = 0; c < source.length; c++) {
+			target[c].CopyState(source[c]);
+			targetDepth[c] = sourceDepth[c];
+		}
+
+	}
+
+
+	private static SoilColumnDynamicVariables[][] NewStates(int slices, int columns) {
+
+		SoilColumnDynamicVariables[][] states = new SoilColumnDynamicVariables[slices][columns];
+		for (int n = 0; n < slices; n++) {
+			for (int c = 0; c < columns; c++) states[n][c] = new SoilColumnDynamicVariables();
+		}
+
+		return states;
+
+	}
+
+}
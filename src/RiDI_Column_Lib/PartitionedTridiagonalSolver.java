@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Partitioned (SPIKE-like) solver of the tridiagonal systems of very deep columns. The rows are split in contiguous blocks,
+ * one per worker. Every block eliminates its interior rows independently, leaving them as a function of its first and last
+ * rows: x_i = y_i - v_i * x_first - w_i * x_last. The first and last rows of all the blocks then form a tridiagonal system of
+ * two rows per block, solved sequentially, and the blocks substitute back independently. Without pivoting, as the Thomas
+ * algorithm, so the matrix must be diagonally dominant (the Richards matrices are). Same arguments and results as
+ * Richards1D.TridiagonalSolver: sub[i] and sup[i] couple row i with rows i - 1 and i + 1, and the solution replaces rhs.
+ */
+public class PartitionedTridiagonalSolver {
+
+    //Logger
+    private static Logger logger;
+
+	//Smallest number of rows of a block
+	private static final int MIN_BLOCK_ROWS = 256;
+
+	//Unknowns from which the solver is used instead of the sequential sweep
+	public int MinNodes;
+
+	//Workers of the blocks (none solves the blocks in sequence)
+	private ForkJoinPool pool;
+
+	//Smallest absolute value of a pivot
+	private double PivotMin;
+
+	//Block workspace: pivots, interior solution and spikes of the first and last rows of the block
+	private double[] Pivot;
+	private double[] Y;
+	private double[] V;
+	private double[] W;
+
+	//Reduced system of the first and last rows of the blocks
+	private double[] ReducedSub;
+	private double[] ReducedDiag;
+	private double[] ReducedSup;
+	private double[] ReducedRhs;
+
+	//First row of every block (and the end of the last one)
+	private int[] BlockStart;
+
+	//System being solved
+	private double[] sub;
+	private double[] diag;
+	private double[] sup;
+	private double[] rhs;
+
+	//Systems solved by this solver
+	public long Solves = 0;
+
+
+	public PartitionedTridiagonalSolver(int nodesNumber, int minNodes, ForkJoinPool pool, double pivotMin) {
+
+        //Create logger and log file
+        logger = Logger.getLogger("RiDI.PartitionedTridiagonalSolver");
+
+        //Blocks of at least MIN_BLOCK_ROWS rows
+        MinNodes = Math.max(minNodes, 2 * MIN_BLOCK_ROWS);
+        this.pool = pool;
+        PivotMin = pivotMin;
+
+        Pivot = new double[nodesNumber];
+        Y = new double[nodesNumber];
+        V = new double[nodesNumber];
+        W = new double[nodesNumber];
+
+        int maxBlocks = pool != null ? pool.getParallelism() : 1;
+        ReducedSub = new double[2 * maxBlocks];
+        ReducedDiag = new double[2 * maxBlocks];
+        ReducedSup = new double[2 * maxBlocks];
+        ReducedRhs = new double[2 * maxBlocks];
+        BlockStart = new int[maxBlocks + 1];
+
+        //Log
+        logger.info("Partitioned tridiagonal solver from " + MinNodes + " unknowns, " + maxBlocks + " blocks.");
+
+	}
+
+
+	/**
+	 * Solve rows first to last of the system, the solution replaces rhs. Systems smaller than MinNodes are solved by
+	 * the caller.
+	 */
+	public void Solve(double[] sub, double[] diag, double[] sup, double[] rhs, int first, int last) {
+
+		this.sub = sub;
+		this.diag = diag;
+		this.sup = sup;
+		this.rhs = rhs;
+
+		//Blocks of equal size
+		int rows = last - first + 1;
+		int blocks = Math.max(1, Math.min(BlockStart.length - 1, rows / MIN_BLOCK_ROWS));
+		for(int k = 0; k <= blocks; k++) {
+			BlockStart[k] = first + (int) ((long) k * rows / blocks);
+		}
+
+		//Interior rows of the blocks, reduced rows
+		RunBlocks(blocks, true);
+
+		//Reduced system
+		ReducedSolver(2 * blocks);
+
+		//Interior rows from the first and last rows of their block
+		RunBlocks(blocks, false);
+
+		Solves = Solves + 1;
+
+		this.sub = null;
+		this.diag = null;
+		this.sup = null;
+		this.rhs = null;
+
+	}
+
+
+	private void RunBlocks(int blocks, boolean reduce) {
+
+		if(pool == null || blocks == 1) {
+			for(int k = 0; k < blocks; k++) {
+				if(reduce) {
+					ReduceBlock(k, blocks);
+				} else {
+					SubstituteBlock(k);
+				}
+			}
+			return;
+		}
+
+		//From a column worker the blocks are forked in its own pool
+		BlocksTask task = new BlocksTask(0, blocks, blocks, reduce);
+		if(ForkJoinTask.inForkJoinPool()) {
+			task.invoke();
+		} else {
+			pool.invoke(task);
+		}
+
+	}
+
+
+	/**
+	 * Elimination of the interior rows of block k with the three right hand sides (the block system, the coupling to the
+	 * first row and the coupling to the last row), then the two rows of the block in the reduced system.
+	 */
+	private void ReduceBlock(int k, int blocks) {
+
+		int s = BlockStart[k];
+		int t = BlockStart[k+1] - 1;
+
+		//Forward, the coupling to the last row only enters the last interior row
+		Pivot[s+1] = diag[s+1];
+		Y[s+1] = rhs[s+1];
+		V[s+1] = sub[s+1];
+		for(int i = s + 2; i < t; i++) {
+			if(Math.abs(Pivot[i-1]) < PivotMin) Pivot[i-1] = PivotMin;
+			double m = sub[i] / Pivot[i-1];
+			Pivot[i] = diag[i] - m * sup[i-1];
+			Y[i] = rhs[i] - m * Y[i-1];
+			V[i] = - m * V[i-1];
+		}
+
+		//Backward
+		if(Math.abs(Pivot[t-1]) < PivotMin) Pivot[t-1] = PivotMin;
+		Y[t-1] = Y[t-1] / Pivot[t-1];
+		V[t-1] = V[t-1] / Pivot[t-1];
+		W[t-1] = sup[t-1] / Pivot[t-1];
+		for(int i = t - 2; i > s; i--) {
+			Y[i] = (Y[i] - sup[i] * Y[i+1]) / Pivot[i];
+			V[i] = (V[i] - sup[i] * V[i+1]) / Pivot[i];
+			W[i] = - sup[i] * W[i+1] / Pivot[i];
+		}
+
+		//First row, coupled to the last row of the block below
+		int r = 2 * k;
+		ReducedSub[r] = k > 0 ? sub[s] : 0.0;
+		ReducedDiag[r] = diag[s] - sup[s] * V[s+1];
+		ReducedSup[r] = - sup[s] * W[s+1];
+		ReducedRhs[r] = rhs[s] - sup[s] * Y[s+1];
+
+		//Last row, coupled to the first row of the block above
+		ReducedSub[r+1] = - sub[t] * V[t-1];
+		ReducedDiag[r+1] = diag[t] - sub[t] * W[t-1];
+		ReducedSup[r+1] = k < blocks - 1 ? sup[t] : 0.0;
+		ReducedRhs[r+1] = rhs[t] - sub[t] * Y[t-1];
+
+	}
+
+
+	/**
+	 * Thomas algorithm on the reduced system, the solution replaces ReducedRhs.
+	 */
+	private void ReducedSolver(int n) {
+
+		//Forward
+		for(int i = 1; i < n; i++) {
+			if(Math.abs(ReducedDiag[i-1]) < PivotMin) ReducedDiag[i-1] = PivotMin;
+			double m = ReducedSub[i] / ReducedDiag[i-1];
+			ReducedDiag[i] = ReducedDiag[i] - m * ReducedSup[i-1];
+			ReducedRhs[i] = ReducedRhs[i] - m * ReducedRhs[i-1];
+		}
+
+		//Backward
+		if(Math.abs(ReducedDiag[n-1]) < PivotMin) ReducedDiag[n-1] = PivotMin;
+		ReducedRhs[n-1] = ReducedRhs[n-1] / ReducedDiag[n-1];
+		for(int i = n - 2; i >= 0; i--) {
+			ReducedRhs[i] = (ReducedRhs[i] - ReducedSup[i] * ReducedRhs[i+1]) / ReducedDiag[i];
+		}
+
+	}
+
+
+	private void SubstituteBlock(int k) {
+
+		int s = BlockStart[k];
+		int t = BlockStart[k+1] - 1;
+		double xFirst = ReducedRhs[2 * k];
+		double xLast = ReducedRhs[2 * k + 1];
+
+		rhs[s] = xFirst;
+		rhs[t] = xLast;
+		for(int i = s + 1; i < t; i++) {
+			rhs[i] = Y[i] - V[i] * xFirst - W[i] * xLast;
+		}
+
+	}
+
+
+	/**
+	 * Fork-join task over a range of blocks, split in halves down to one block.
+	 */
+	private class BlocksTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private int first;
+		private int last;
+		private int blocks;
+		private boolean reduce;
+
+		BlocksTask(int first, int last, int blocks, boolean reduce) {
+			this.first = first;
+			this.last = last;
+			this.blocks = blocks;
+			this.reduce = reduce;
+		}
+
+		@Override
+		protected void compute() {
+
+			//Block solved by this worker
+			if(last - first == 1) {
+				if(reduce) {
+					ReduceBlock(first, blocks);
+				} else {
+					SubstituteBlock(first);
+				}
+				return;
+			}
+
+			int middle = (first + last) >>> 1;
+			invokeAll(new BlocksTask(first, middle, blocks, reduce), new BlocksTask(middle, last, blocks, reduce));
+
+		}
+	}
+
+}
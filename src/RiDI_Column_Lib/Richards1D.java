@@ -16,33 +16,96 @@
  *******************************************************************************/
 package RiDI_Column_Lib;
 
+import java.util.concurrent.ForkJoinPool;
+
 import org.apache.log4j.Logger;
-import org.math.array.DoubleArray;
-import org.math.array.LinearAlgebra;
+
+import RiDI_Column_Lib.interfaces.InterfaceBottomBoundaryCondition;
 
 public class Richards1D {
 
 	//Logger
 	private static Logger logger;
 
-	//Banded matrix storage
+	//Banded matrix storage, the matrix is symmetric and DiagSupInf[i] links node i with node i + 1 (bottom and top rows included)
 	private double SourceTerm[];
 	private double Diagonal[];
 	private double DiagSupInf[];
-	private double SourceTermBottom;
-	private double DiagonalBottom;
-	private double DiagonalInfBottom;
-	private double SourceTermTop;
-	private double DiagonalTop;
-	private double DiagonalSupBottom;
 	private double MaxPondingDepth;
 
+	//Nonlinear solver: Picard (default) or Newton
+	private boolean NewtonSolver = false;
+
+	//Newton workspace (residual, non symmetric Jacobian, increment and conductivity derivative)
+	private double Residual[];
+	private double JacobianSub[];
+	private double JacobianSup[];
+	private double Increment[];
+	private double HydConductivityDerivative[];
+
+	//Maximum number of step halvings in the Newton line search
+	private int MaxLineSearch = 6;
+
+	//Iterations of the last accepted time step (used by the time step controller)
+	public int LastIterations;
+
+	//Iterations done by this solver, failed attempts included (used by the column scheduler)
+	public long IterationCount = 0;
+
+	//The last time step converged (false if it stopped at dtMin, used by the failure policy)
+	public boolean Converged = true;
+
+	//Predictor of the initial guess (null keeps the linear extrapolation of timeForward)
+	private SuctionPredictor Predictor;
+
+	//Iteration policy of the Picard scheme (null for fixed relaxation and at least three iterations)
+	private NonlinearIterationPolicy IterationPolicy;
+
+	//Mixed form of the Picard scheme, water content as a function of the iterate instead of the capacity based update
+	private boolean MixedForm = false;
+
+	//Transformed variable (log-suction in the dry range) as unknown of the Picard linear systems, derivative dh/du of the nodes
+	private boolean TransformedVariable = false;
+	private double TransformDerivative[];
+
+	//Mass balance monitor of every step, closure error of a converged iterate above which the iterations go on (0 to only monitor)
+	private boolean BalanceMonitor = false;
+	private double BalanceTolerance = 0.0;
+
+	//Counter of the iterations added by the mass balance
+	public long BalanceIterations = 0;
+
+	//Second order backward differences (BDF2) in the Picard scheme, old water content of the multistep formula
+	private boolean BDF2 = false;
+	private double ThetaStar[];
+
+	//Fast paths of saturated and steady columns, fraction of TolTh below which a step of a steady column is skipped
+	private boolean RegimeFastPaths = false;
+	private double SteadyFraction = 0.01;
+	private boolean SteadyCatchUp = false;
+
+	//Fused Picard kernel (properties, assembly and elimination in one upward sweep, back substitution and convergence
+	//test in one downward sweep) or separate passes, its increment norm, convergence and divergence (a suction at rMax)
+	private boolean FusedKernel = true;
+	private double FusedNorm;
+	private boolean FusedConverged;
+	private boolean FusedDiverged;
+
+	//Partitioned solver of the linear systems of deep columns (null for the sequential sweep only)
+	private PartitionedTridiagonalSolver PartitionedSolver;
+
+	//Largest step ratio of a BDF2 step (zero-stability limit 1 + sqrt(2))
+	private static final double MAX_STEP_RATIO = 1.0 + Math.sqrt(2.0);
+
+	//Natural logarithm of 10
+	private static final double LN10 = Math.log(10.0);
+
 	//Maximum minimum pressures
-	double rMax = 1.0E+10;
-	double rMin = 1.0E-100;
+	static final double rMax = 1.0E+10;
+	static final double rMin = 1.0E-100;
 
 	//Minimal water pressure in the surface
-	double hCritA = -1.0E+100; //.2385 - 10.3322;
+	static final double hCritA = -1.0E+100; //.2385 - 10.3322;
 
 
 
@@ -55,6 +118,13 @@ public class Richards1D {
 		SourceTerm = new double[nodesNumber];
 		Diagonal = new double[nodesNumber];
 		DiagSupInf = new double[nodesNumber];    
+		Residual = new double[nodesNumber];
+		JacobianSub = new double[nodesNumber];
+		JacobianSup = new double[nodesNumber];
+		Increment = new double[nodesNumber];
+		HydConductivityDerivative = new double[nodesNumber];
+		TransformDerivative = new double[nodesNumber];
+		ThetaStar = new double[nodesNumber];
 		
 		//Maximum ponding, consider reservoir h > 100 m
 		MaxPondingDepth = maxPonding;
@@ -62,13 +132,103 @@ public class Richards1D {
 
 	}
 
+	public void setNonlinearSolver(String solverName) {
+
+		//Log
+		logger.info("Call to setNonlinearSolver(" + solverName + ").");
+
+		NewtonSolver = solverName.equals("Newton");
+
+	}
+
+	public void setPredictor(SuctionPredictor predictor) {
+
+		Predictor = predictor;
+
+	}
+
+	public void setDiscretisation(String discretisationName) {
+
+		//Log
+		logger.info("Call to setDiscretisation(" + discretisationName + ").");
+
+		MixedForm = discretisationName.equals("MixedForm");
+
+	}
+
+	public void setRegimeFastPaths(boolean fastPaths) {
+
+		//Log
+		logger.info("Call to setRegimeFastPaths(" + fastPaths + ").");
+
+		RegimeFastPaths = fastPaths;
+
+	}
+
+	public void setPartitionedSolver(int minNodes, ForkJoinPool pool) {
+
+		//Log
+		logger.info("Call to setPartitionedSolver(" + minNodes + "," + pool + ").");
+
+		PartitionedSolver = null;
+		if(minNodes > 0 && pool != null) PartitionedSolver = new PartitionedTridiagonalSolver(SourceTerm.length, minNodes, pool, rMin);
+
+	}
+
+	public void setTimeIntegration(String integrationName) {
+
+		//Log
+		logger.info("Call to setTimeIntegration(" + integrationName + ").");
+
+		BDF2 = integrationName.equals("BDF2");
+
+	}
+
+	public void setTransformedVariable(boolean transformed) {
+
+		//Log
+		logger.info("Call to setTransformedVariable(" + transformed + ").");
+
+		TransformedVariable = transformed;
+
+	}
+
+	public void setMassBalance(boolean monitor, double tolerance) {
+
+		//Log
+		logger.info("Call to setMassBalance(" + monitor + "," + tolerance + ").");
+
+		BalanceMonitor = monitor;
+		BalanceTolerance = monitor ? tolerance : 0.0;
+
+	}
+
+	public void setFusedKernel(boolean fused) {
+
+		//Log
+		logger.info("Call to setFusedKernel(" + fused + ").");
+
+		FusedKernel = fused;
+
+	}
+
+	public void setIterationPolicy(String policyName) {
+
+		//Log
+		logger.info("Call to setIterationPolicy(" + policyName + ").");
+
+		if(policyName.equals("Anderson")) IterationPolicy = new NonlinearIterationPolicy(Residual.length);
+
+	}
+
 	public double timeStep(double TolTh, double TolH, int MaxIt, double dt, double dtMin, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic, double waterDepth, double precipitation, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
 
 		//Log
-		logger.trace("Call to timeStep(" + dt + "," + Static + "," + Dynamic + ").");
+		if(logger.isTraceEnabled()) logger.trace("Call to timeStep(" + dt + "," + Static + "," + Dynamic + ").");
 
 		//Number of nodes
 		int nodesNumber = Static.nodeZ.length;
+		Converged = true;
 
 		//Store initial boundary conditions (von Newman or Dirichlet) 
 		boolean TopBoundaryType = Dynamic.topBoundCondInfiltration;
@@ -111,48 +271,94 @@ public class Richards1D {
 //		Dynamic.SuctionNew  = DoubleArray.copy(Dynamic.SuctionOld);
 //		Dynamic.SuctionTemp = DoubleArray.copy(Dynamic.SuctionOld);
 		
+		//Saturated and steady columns, a column leaving the steady path first solves the time it skipped
+		if(RegimeFastPaths && !SteadyCatchUp) {
+			double forcing = Dynamic.SteadyForcing;
+			if(RegimeStep(TolTh, dt, Static, Dynamic, ProjectBottomBoundaryCondition)) return dt;
+			if(Dynamic.SteadyTime > 0.0) {
+				CatchUpSteadyTime(TolTh, TolH, MaxIt, dtMin, forcing, Static, Dynamic, ProjectBottomBoundaryCondition);
+				TopBoundaryType = Dynamic.topBoundCondInfiltration;
+				BotBoundaryType = Dynamic.botBoundCondInfiltration;
+			}
+		}
+		
+		//Initial guess from the history
+		if(Predictor != null) Predictor.Predict(dt, Dynamic);
+		
+		//Newton linearisation
+		if(NewtonSolver) {
+			return timeStepNewton(TolTh, TolH, MaxIt, dt, dtMin, Static, Dynamic, ProjectBottomBoundaryCondition, TopBoundaryType, BotBoundaryType);
+		}
+		
+		if(IterationPolicy != null) IterationPolicy.Reset();
+		
+		//Storage of the step, the BDF2 formula is an Euler step of length dtStorage from the water content ThetaStar
+		double[] thetaOld = Dynamic.ThetaOld;
+		double dtStorage = BDF2 ? MultistepStorage(dt, thetaOld, Static, Dynamic) : dt;
+		
+		//Fused kernel, suction unknowns, no seepage face (the face changes the bottom row after the assembly) and a sequential elimination
+		boolean fused = FusedKernel && !TransformedVariable && nodesNumber >= 3 && !ProjectBottomBoundaryCondition.BottomBoundaryModel.SeepageFace() &&
+				(PartitionedSolver == null || nodesNumber < PartitionedSolver.MinNodes);
+		
 
 		//Internal iterations
 		while (!ItCrit) { 
 			
 			//Log
-			logger.trace("Solver internal loop: dt= " + dt + ", iteration= " + String.format("%03d", partialIteration) + ", total iterations = " + String.format("%03d", totalIteration));
+			if(logger.isTraceEnabled()) logger.trace("Solver internal loop: dt= " + dt + ", iteration= " + String.format("%03d", partialIteration) + ", total iterations = " + String.format("%03d", totalIteration));
 
 
 			//Generate terms of matrix equation and solve by GaussSolver elimination
-			updateNodeProperties(Static, Dynamic);
+			boolean topType = Dynamic.topBoundCondInfiltration;
+			boolean botType = Dynamic.botBoundCondInfiltration;
+			double relaxation = IterationPolicy != null ? IterationPolicy.Relaxation : 0.1;
 
-			//Prepare matrix coefficients
-			MatrixTerms(dt, Static, Dynamic, ProjectBottomBoundaryCondition); 
+			if(fused) {
 
-			//Internal Picard linealization
-			Dynamic.SuctionTemp = DoubleArray.copy(Dynamic.SuctionNew);
+				FusedIteration(dtStorage, relaxation, TolTh, TolH, Static, Dynamic, ProjectBottomBoundaryCondition);
 
-			//Matrix solver (updates hNew)    
-			TridiagonalGaussSolver(dt, Static, Dynamic, ProjectBottomBoundaryCondition);
+			} else {
 
-			//Check top atmospheric conditions
-			if(Dynamic.SuctionNew[nodesNumber-1] < hCritA) Dynamic.SuctionNew[nodesNumber-1] = hCritA;
+				updateNodeProperties(Static, Dynamic, relaxation);
+				if(MixedForm) updateWaterContent(Static, Dynamic);
 
-			//Check results range
-			for(int i = 0; i < nodesNumber; i++) {
+				//Prepare matrix coefficients
+				MatrixTerms(dtStorage, Static, Dynamic, ProjectBottomBoundaryCondition); 
 
-				//Check pressure
-				if(Math.abs(Dynamic.SuctionNew[i]) > rMax) {
-					Dynamic.SuctionNew[i] = Dynamic.SuctionNew[i] / Math.abs(Dynamic.SuctionNew[i]) * rMax;
-				}
+				//Internal Picard linealization
+				System.arraycopy(Dynamic.SuctionNew, 0, Dynamic.SuctionTemp, 0, nodesNumber);
 
-				//Check almost last node
-				if(Dynamic.SuctionNew[i]  < hCritA && i > nodesNumber * (9.0/10.0)) {
-					Dynamic.SuctionNew[i] = hCritA;
+				//Matrix solver (updates hNew)    
+				if(TransformedVariable) {
+					TransformedSolver(Static, Dynamic, ProjectBottomBoundaryCondition);
+				} else {
+					TridiagonalGaussSolver(dtStorage, Static, Dynamic, ProjectBottomBoundaryCondition);
 				}
 
+				//Check top atmospheric conditions
+				if(Dynamic.SuctionNew[nodesNumber-1] < hCritA) Dynamic.SuctionNew[nodesNumber-1] = hCritA;
+
+				//Check results range
+				for(int i = 0; i < nodesNumber; i++) {
+
+					//Check pressure
+					if(Math.abs(Dynamic.SuctionNew[i]) > rMax) {
+						Dynamic.SuctionNew[i] = Dynamic.SuctionNew[i] / Math.abs(Dynamic.SuctionNew[i]) * rMax;
+					}
+
+					//Check almost last node
+					if(Dynamic.SuctionNew[i]  < hCritA && i > nodesNumber * (9.0/10.0)) {
+						Dynamic.SuctionNew[i] = hCritA;
+					}
 
+
+				}
 			}
 
 			//Update counters
 			partialIteration = partialIteration + 1;
 			totalIteration = totalIteration + 1;
+			IterationCount = IterationCount + 1;
 
 
 			//Test for convergence
@@ -162,9 +368,18 @@ public class Richards1D {
 			double EpsTh = 0.0;
 			double EpsH = 0.0;
 			double Th = 0.0;
+			double norm = 0.0;
 			int i = 0;
 
-			for(i = 0; i < nodesNumber; i++) {
+			//Already tested by the fused kernel
+			if(fused) {
+				ItCrit = FusedConverged;
+				norm = FusedNorm;
+				if(FusedDiverged) partialIteration = MaxIt;
+				i = nodesNumber;
+			}
+
+			for(; i < nodesNumber; i++) {
 				
 				EpsTh = 0.0;
 				EpsH = 0.0;
@@ -184,17 +399,38 @@ public class Richards1D {
 				if( EpsTh > TolTh || EpsH > TolH || Math.abs(Dynamic.SuctionNew[i]) > (rMax*0.999)) {
 					ItCrit = false;
 					if(Math.abs(Dynamic.SuctionNew[i]) > (rMax*0.999)) partialIteration = MaxIt;
-					break;
+					if(IterationPolicy == null) break;
 				}
 
+				//Residual norm of the iteration policy
+				norm = Math.max(norm, Math.max(EpsTh / TolTh, EpsH / TolH));
+
+			}
+			
+			//Residual based convergence and acceleration of the next iterate
+			boolean minimumIterations = partialIteration <= 2;
+			if(IterationPolicy != null) {
+				boolean boundarySwitch = topType != Dynamic.topBoundCondInfiltration || botType != Dynamic.botBoundCondInfiltration;
+				ItCrit = IterationPolicy.Converged(ItCrit, norm, boundarySwitch);
+				minimumIterations = false;
+				if(!ItCrit && partialIteration < MaxIt) {
+					IterationPolicy.Accelerate(Dynamic.SuctionTemp, Dynamic.SuctionNew, Dynamic.botBoundCondInfiltration ? 0 : 1,
+							Dynamic.topBoundCondInfiltration ? nodesNumber - 1 : nodesNumber - 2);
+				}
 			}
 			
 			//Log
-			logger.trace("Solver error: i= " + i + ", theta= " + EpsTh + ", suction= " + EpsH + " m");
+			if(logger.isTraceEnabled()) logger.trace("Solver error: i= " + i + ", theta= " + EpsTh + ", suction= " + EpsH + " m");
 
 
 			//Keep running or done?
-			if(!ItCrit || partialIteration <= 2) {
+			//Mass balance of the converged iterate, keep iterating while it does not close (one step closure, not for a BDF2 step)
+			if(ItCrit && !minimumIterations && BalanceTolerance > 0.0 && dtStorage == dt && Math.abs(BalanceError(dt, Static, Dynamic)) > BalanceTolerance) {
+				ItCrit = false;
+				BalanceIterations = BalanceIterations + 1;
+			}
+
+			if(!ItCrit || minimumIterations) {
 
 				//Next internal iteration
 				if(partialIteration < MaxIt) {
@@ -205,6 +441,9 @@ public class Richards1D {
 				} else if(dt <= dtMin) {
 
 					ConvgF = false;
+					Converged = false;
+					LastIterations = partialIteration;
+					Dynamic.ThetaOld = thetaOld;
 
 					//Log
 					logger.error("Error in solver: The numerical solution has not converged! (" + dt + " < " + dtMin + ").");
@@ -217,8 +456,8 @@ public class Richards1D {
 				} else {
 
 					//Recover initial values
-					Dynamic.SuctionNew  = DoubleArray.copy(Dynamic.SuctionOld);
-					Dynamic.SuctionTemp = DoubleArray.copy(Dynamic.SuctionOld);
+					System.arraycopy(Dynamic.SuctionOld, 0, Dynamic.SuctionNew, 0, nodesNumber);
+					System.arraycopy(Dynamic.SuctionOld, 0, Dynamic.SuctionTemp, 0, nodesNumber);
 
 					//Recover old BC
 					Dynamic.topBoundCondInfiltration = TopBoundaryType;
@@ -227,12 +466,15 @@ public class Richards1D {
 
 					//Reduce time step
 					dt = Math.max(dt / 3.0, dtMin);
+					dtStorage = BDF2 ? MultistepStorage(dt, thetaOld, Static, Dynamic) : dt;
+					if(Predictor != null) Predictor.Predict(dt, Dynamic);
+					if(IterationPolicy != null) IterationPolicy.Reset();
 					
 					partialIteration = 0;
 					ConvgF = true;
 					
 					//Log
-					logger.trace("Solver reducing time step: dt_new= " + dt);
+					if(logger.isTraceEnabled()) logger.trace("Solver reducing time step: dt_new= " + dt);
 
 
 				}
@@ -240,77 +482,418 @@ public class Richards1D {
 			}
 		}
 
+		LastIterations = partialIteration;
+
 		//It converged!
 		if(ItCrit) {
 
-			//Theta is computed as Taylor expansion of pressure (implicit term)
-			for(int i = 0; i < nodesNumber; i++) {
-				Dynamic.ThetaNew[i] = Dynamic.ThetaNew[i] + Dynamic.Capacity[i] * (Dynamic.SuctionNew[i] - Dynamic.SuctionTemp[i]);
+			//Theta is computed as Taylor expansion of pressure (implicit term), or from the retention curve in the mixed form
+			if(MixedForm) {
+				updateWaterContent(Static, Dynamic);
+			} else {
+				for(int i = 0; i < nodesNumber; i++) {
+					Dynamic.ThetaNew[i] = Dynamic.ThetaNew[i] + Dynamic.Capacity[i] * (Dynamic.SuctionNew[i] - Dynamic.SuctionTemp[i]);
+				}
 			}
 		}
 
+		CompleteStep(dt, dtStorage, ItCrit, thetaOld, Static, Dynamic);
+		
+		return dt;
+
+	}
+
+
+	/**
+	 * End of a step: ponding limit, histories, velocities and mass balance.
+	 */
+	private void CompleteStep(double dt, double dtStorage, boolean converged, double[] thetaOld, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
+
+		int nodesNumber = Static.nodeZ.length;
+
 		//Check the maximum ponding allowed
 		if(Dynamic.SuctionNew[nodesNumber - 1] > MaxPondingDepth) {
 			Dynamic.topBoundCondInfiltration = false;
 			Dynamic.SuctionNew[nodesNumber - 1] = MaxPondingDepth;
 		}
 		
+		//History of the predictor
+		if(Predictor != null && converged) Predictor.Record(dt, Dynamic);
+		
 		//Update velocities
-		computeVelocity(dt, Static, Dynamic);
+		computeVelocity(dtStorage, Static, Dynamic);
+		Dynamic.ThetaOld = thetaOld;
 		
-		return dt;
+		//Largest water content change of the step, first test of a steady column in the next one
+		if(RegimeFastPaths) {
+			double change = 0.0;
+			for(int i = 0; i < nodesNumber; i++) change = Math.max(change, Math.abs(Dynamic.ThetaNew[i] - Dynamic.ThetaOld[i]));
+			Dynamic.StepThetaChange = change;
+		}
+		
+		//Error estimate and history of the multistep formula
+		if(Dynamic.ThetaHistory1 != null && converged) RecordMultistep(dt, dtStorage != dt, Static, Dynamic);
+		
+		//Mass balance monitor
+		if(BalanceMonitor) MonitorBalance(dt, Static, Dynamic);
+
+	}
+
+
+	/**
+	 * Fast paths of two flow regimes, returns false (state untouched) if the column is in neither:
+	 * - fully saturated column, with constant conductivity and no capacity the step is one linear solve, accepted if the
+	 *   column stays saturated under the same boundary conditions;
+	 * - steady column (gravity drainage or hydrostatic), the residual of the old level is below a fraction of TolTh in
+	 *   water content over the step, the state is kept and the step is added to the skipped time. The bound of the
+	 *   residual changes is added up and the column leaves the fast path when it reaches TolTh, the skipped time is then
+	 *   solved by CatchUpSteadyTime before the step. The residual is only assembled if the rainfall is the one of the last
+	 *   step and the last step changed the water content less than the same fraction of TolTh.
+	 */
+	private boolean RegimeStep(double TolTh, double dt, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic,
+			BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		int nodesNumber = Static.nodeZ.length;
+
+		boolean saturated = true;
+		for(int i = 0; i < nodesNumber && saturated; i++) {
+			saturated = Dynamic.SuctionOld[i] >= Static.nodeSoilType[i].SaturatedSuction;
+		}
+
+		//Saved state: guess, boundary conditions and water content
+		boolean topType = Dynamic.topBoundCondInfiltration;
+		boolean botType = Dynamic.botBoundCondInfiltration;
+		double topValue = Dynamic.topBoundaryCondition;
+		double botValue = Dynamic.botBoundaryCondition;
+		System.arraycopy(Dynamic.SuctionNew, 0, Increment, 0, nodesNumber);
+
+		System.arraycopy(Dynamic.SuctionOld, 0, Dynamic.SuctionNew, 0, nodesNumber);
+		System.arraycopy(Dynamic.SuctionOld, 0, Dynamic.SuctionTemp, 0, nodesNumber);
+
+		//Rainfall of the last step
+		double forcing = Dynamic.SteadyForcing;
+		Dynamic.SteadyForcing = Dynamic.topBoundaryCondition;
+
+		boolean accepted;
+
+		if(saturated) {
+
+			for(int i = 0; i < nodesNumber; i++) {
+				Dynamic.HydConductivity[i] = Static.nodeSoilType[i].Ks;
+				Dynamic.Capacity[i] = 0.0;
+				Dynamic.Saturation[i] = 1.0;
+				Dynamic.ThetaNew[i] = Dynamic.ThetaOld[i];
+			}
+
+			MatrixTerms(dt, Static, Dynamic, ProjectBottomBoundaryCondition);
+			boolean ponded = Dynamic.SuctionNew[nodesNumber - 1] > 0.0;
+
+			//Without capacity the system needs a fixed head or the ponding storage
+			accepted = ponded || !Dynamic.topBoundCondInfiltration || !Dynamic.botBoundCondInfiltration;
+			if(accepted) {
+				TridiagonalGaussSolver(dt, Static, Dynamic, ProjectBottomBoundaryCondition);
+				IterationCount = IterationCount + 1;
+			}
+
+			//Same regime and boundary conditions at the new level
+			accepted = accepted && ponded == (Dynamic.SuctionNew[nodesNumber - 1] > 0.0);
+			for(int i = 0; i < nodesNumber && accepted; i++) {
+				accepted = Dynamic.SuctionNew[i] >= Static.nodeSoilType[i].SaturatedSuction && Math.abs(Dynamic.SuctionNew[i]) < rMax;
+			}
+			if(accepted) {
+				boolean newTop = Dynamic.topBoundCondInfiltration;
+				boolean newBot = Dynamic.botBoundCondInfiltration;
+				System.arraycopy(Dynamic.SuctionNew, 0, Dynamic.SuctionTemp, 0, nodesNumber);
+				MatrixTerms(dt, Static, Dynamic, ProjectBottomBoundaryCondition);
+				accepted = newTop == topType && newBot == botType && Dynamic.topBoundCondInfiltration == topType && Dynamic.botBoundCondInfiltration == botType;
+			}
+
+		} else if(Dynamic.topBoundaryCondition != forcing || !(Dynamic.StepThetaChange < SteadyFraction * TolTh)) {
+
+			//Rainfall changed or the column moved in the last step, no need to assemble the residual
+			accepted = false;
+			Dynamic.SteadyDrift = 0.0;
+
+		} else {
+
+			updateNodeProperties(Static, Dynamic);
+			System.arraycopy(Dynamic.ThetaOld, 0, Dynamic.ThetaNew, 0, nodesNumber);
+			MatrixTerms(dt, Static, Dynamic, ProjectBottomBoundaryCondition);
+
+			//Largest water content change the residual of the old level would give in the step
+			double change = 0.0;
+			int first = Dynamic.botBoundCondInfiltration ? 0 : 1;
+			int last = Dynamic.topBoundCondInfiltration ? nodesNumber - 1 : nodesNumber - 2;
+			for(int i = first; i <= last; i++) {
+				double residual;
+				if(i == 0) {
+					residual = Diagonal[0] * Dynamic.SuctionOld[0] + DiagSupInf[0] * Dynamic.SuctionOld[1] - SourceTerm[0];
+				} else if(i == nodesNumber - 1) {
+					residual = Diagonal[i] * Dynamic.SuctionOld[i] + DiagSupInf[i-1] * Dynamic.SuctionOld[i-1] - SourceTerm[i];
+				} else {
+					residual = Diagonal[i] * Dynamic.SuctionOld[i] + DiagSupInf[i-1] * Dynamic.SuctionOld[i-1] + DiagSupInf[i] * Dynamic.SuctionOld[i+1] - SourceTerm[i];
+				}
+				change = Math.max(change, Math.abs(residual) * dt * Static.Stencil.InvVolume[i]);
+			}
+
+			accepted = Dynamic.topBoundCondInfiltration == topType && Dynamic.botBoundCondInfiltration == botType &&
+					change < SteadyFraction * TolTh && Dynamic.SteadyDrift + change < TolTh;
+			if(accepted) {
+				Dynamic.SteadyDrift = Dynamic.SteadyDrift + change;
+				Dynamic.SteadyTime = Dynamic.SteadyTime + dt;
+			} else {
+				Dynamic.SteadyDrift = 0.0;
+			}
+
+		}
+
+		if(!accepted) {
+			System.arraycopy(Increment, 0, Dynamic.SuctionNew, 0, nodesNumber);
+			System.arraycopy(Dynamic.ThetaOld, 0, Dynamic.ThetaNew, 0, nodesNumber);
+			Dynamic.topBoundCondInfiltration = topType;
+			Dynamic.botBoundCondInfiltration = botType;
+			Dynamic.topBoundaryCondition = topValue;
+			Dynamic.botBoundaryCondition = botValue;
+			return false;
+		}
+
+		//Log
+		if(logger.isTraceEnabled()) logger.trace("Regime fast path: dt= " + dt + ", saturated= " + saturated);
+
+		LastIterations = 1;
+		CompleteStep(dt, dt, true, Dynamic.ThetaOld, Static, Dynamic);
+
+		return true;
 
 	}
 
 
-	private static void computeVelocity(double dt, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
+	/**
+	 * Solve the time a column skipped on the steady path with the rainfall of the skipped steps (forcing, the top boundary
+	 * condition), so it is back on the clock of the caller. The boundary condition of the current step is restored.
+	 */
+	private void CatchUpSteadyTime(double TolTh, double TolH, int MaxIt, double dtMin, double forcing, SoilColumnStaticProperties Static,
+			SoilColumnDynamicVariables Dynamic, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
 
 		//Log
-		logger.trace("Call to computeVelocity(" + dt + "," + Static + "," + Dynamic + ").");
+		if(logger.isTraceEnabled()) logger.trace("Steady column catches up " + Dynamic.SteadyTime + " s.");
+
+		double steadyTime = Dynamic.SteadyTime;
+		double current = Dynamic.topBoundaryCondition;
+		double dtLocal = 0.0;
+
+		Dynamic.SteadyTime = 0.0;
+		Dynamic.SteadyDrift = 0.0;
+		SteadyCatchUp = true;
+
+		while(dtLocal < steadyTime) {
+			dtLocal = dtLocal + timeStep(TolTh, TolH, MaxIt, (steadyTime - dtLocal), dtMin, Static, Dynamic, 0.0, -forcing, ProjectBottomBoundaryCondition);
+			timeForward((steadyTime - dtLocal), steadyTime, Static, Dynamic);
+		}
+
+		SteadyCatchUp = false;
+		Dynamic.topBoundaryCondition = current;
+		Dynamic.SteadyForcing = current;
+
+	}
+
+
+	/**
+	 * Variable step BDF2 storage of a step of length dt, written as an implicit Euler step of length dt/alpha from the water
+	 * content ThetaStar = theta_n + beta/alpha (theta_n - theta_n-1), alpha = (1+2w)/(1+w), beta = w^2/(1+w) and w the ratio
+	 * with the last step. The first step of a column, a ponded surface and a ratio beyond the zero-stability limit are
+	 * Euler steps. Returns the step of the storage terms and points ThetaOld to the water content they use.
+	 */
+	private double MultistepStorage(double dt, double[] thetaOld, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
+
+		int nodesNumber = Static.nodeZ.length;
+		double ratio = Dynamic.ThetaLevels > 0 ? dt / Dynamic.ThetaStep1 : 0.0;
+
+		if(Dynamic.ThetaLevels == 0 || ratio > MAX_STEP_RATIO || Dynamic.SuctionOld[nodesNumber - 1] > 0.0) {
+			Dynamic.ThetaOld = thetaOld;
+			return dt;
+		}
+
+		double alpha = (1.0 + 2.0 * ratio) / (1.0 + ratio);
+		double beta = ratio * ratio / (1.0 + ratio);
+
+		for(int i = 0; i < nodesNumber; i++) {
+			ThetaStar[i] = thetaOld[i] + beta / alpha * (thetaOld[i] - Dynamic.ThetaHistory1[i]);
+		}
+		Dynamic.ThetaOld = ThetaStar;
+
+		return dt / alpha;
+
+	}
+
+
+	/**
+	 * Local truncation error of a converged step (largest water content error of the nodes) by Milne's device, from the
+	 * difference with the extrapolation of the history: linear for an Euler step, quadratic for a BDF2 step (-1 without
+	 * enough levels). The old level then goes into the history.
+	 */
+	private void RecordMultistep(double dt, boolean multistep, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
+
+		int nodesNumber = Static.nodeZ.length;
+		double h1 = Dynamic.ThetaStep1;
+		double h2 = Dynamic.ThetaStep2;
+
+		Dynamic.TruncationError = -1.0;
+
+		if(!multistep && Dynamic.ThetaLevels >= 1) {
+
+			double factor = dt / (2.0 * dt + h1);
+			double error = 0.0;
+			for(int i = 0; i < nodesNumber; i++) {
+				double predicted = Dynamic.ThetaOld[i] + dt / h1 * (Dynamic.ThetaOld[i] - Dynamic.ThetaHistory1[i]);
+				error = Math.max(error, Math.abs(Dynamic.ThetaNew[i] - predicted));
+			}
+			Dynamic.TruncationError = factor * error;
+
+		} else if(multistep && Dynamic.ThetaLevels >= 2) {
+
+			//Lagrange weights of the levels n, n-1 and n-2
+			double l0 = (dt + h1) * (dt + h1 + h2) / (h1 * (h1 + h2));
+			double l1 = -dt * (dt + h1 + h2) / (h1 * h2);
+			double l2 = dt * (dt + h1) / ((h1 + h2) * h2);
+			double factor = dt * (dt + h1) / ((dt + h1 + h2) * (2.0 * dt + h1) + dt * (dt + h1));
+			double error = 0.0;
+			for(int i = 0; i < nodesNumber; i++) {
+				double predicted = l0 * Dynamic.ThetaOld[i] + l1 * Dynamic.ThetaHistory1[i] + l2 * Dynamic.ThetaHistory2[i];
+				error = Math.max(error, Math.abs(Dynamic.ThetaNew[i] - predicted));
+			}
+			Dynamic.TruncationError = factor * error;
+
+		}
+
+		//Log
+		if(logger.isTraceEnabled()) logger.trace("Truncation error: dt= " + dt + ", BDF2= " + multistep + ", error= " + Dynamic.TruncationError);
+
+		//History, copied in place since a hydrology group shares the arrays
+		System.arraycopy(Dynamic.ThetaHistory1, 0, Dynamic.ThetaHistory2, 0, nodesNumber);
+		System.arraycopy(Dynamic.ThetaOld, 0, Dynamic.ThetaHistory1, 0, nodesNumber);
+		Dynamic.ThetaStep2 = h1;
+		Dynamic.ThetaStep1 = dt;
+		Dynamic.ThetaLevels = Math.min(Dynamic.ThetaLevels + 1, 2);
+
+	}
+
+
+	static void computeVelocity(double dt, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
+
+		//Log
+		if(logger.isTraceEnabled()) logger.trace("Call to computeVelocity(" + dt + "," + Static + "," + Dynamic + ").");
 
 
 		//Compute top velocity
 		int N = Dynamic.SuctionNew.length - 1;
 
-		double dzN = Static.nodeZ[N] - Static.nodeZ[N-1];
-		Dynamic.velNew[N] = -(Dynamic.HydConductivity[N] + Dynamic.HydConductivity[N-1]) / 2.0 * ((Dynamic.SuctionNew[N] - Dynamic.SuctionNew[N-1]) / dzN + 1.0) -
-				dzN / 2.0 * ((Dynamic.ThetaNew[N] - Dynamic.ThetaOld[N]) / dt);
+		//Stencil of the mesh
+		double[] dz = Static.Stencil.Dz;
+		double[] invDz = Static.Stencil.InvDz;
+		double[] invVolume = Static.Stencil.InvVolume;
+		double invDt = 1.0 / dt;
+
+		Dynamic.velNew[N] = -(Dynamic.HydConductivity[N] + Dynamic.HydConductivity[N-1]) / 2.0 * ((Dynamic.SuctionNew[N] - Dynamic.SuctionNew[N-1]) * invDz[N-1] + 1.0) -
+				Static.Stencil.Volume[N] * ((Dynamic.ThetaNew[N] - Dynamic.ThetaOld[N]) * invDt);
 
 		//Compute internal nodel velocity
 		for(int i=1; i<N ; i++) {
 
-
-
-			double dzA = Static.nodeZ[i+1] - Static.nodeZ[i];
-			double dzB = Static.nodeZ[i] - Static.nodeZ[i-1];
-
 			double vA = - (Dynamic.HydConductivity[i] + Dynamic.HydConductivity[i+1]) / 2.0 *
-					( (Dynamic.SuctionNew[i+1] - Dynamic.SuctionNew[i]) / dzA + 1.0);
+					( (Dynamic.SuctionNew[i+1] - Dynamic.SuctionNew[i]) * invDz[i] + 1.0);
 
 			double vB = - (Dynamic.HydConductivity[i] + Dynamic.HydConductivity[i-1]) / 2.0 *
-					( (Dynamic.SuctionNew[i] - Dynamic.SuctionNew[i-1]) / dzB + 1.0);
+					( (Dynamic.SuctionNew[i] - Dynamic.SuctionNew[i-1]) * invDz[i-1] + 1.0);
 
-			Dynamic.velNew[i] = (vA * dzA + vB * dzB) / (dzA + dzB);
+			//Average weighted by the element lengths, dzA + dzB is twice the control volume
+			Dynamic.velNew[i] = (vA * dz[i] + vB * dz[i-1]) * 0.5 * invVolume[i];
 
 		}
 
 		//Compute bottom velocity
-		double dz1 = Static.nodeZ[1] - Static.nodeZ[0];
-		Dynamic.velNew[0] = -(Dynamic.HydConductivity[0] + Dynamic.HydConductivity[1]) / 2.0 * ((Dynamic.SuctionNew[1] - Dynamic.SuctionNew[0]) / dz1 + 1.0) +
-				dz1 /2.0 * ((Dynamic.ThetaNew[0] - Dynamic.ThetaOld[0]) / dt);
+		Dynamic.velNew[0] = -(Dynamic.HydConductivity[0] + Dynamic.HydConductivity[1]) / 2.0 * ((Dynamic.SuctionNew[1] - Dynamic.SuctionNew[0]) * invDz[0] + 1.0) +
+				Static.Stencil.Volume[0] * ((Dynamic.ThetaNew[0] - Dynamic.ThetaOld[0]) * invDt);
 
 	}
 
 
 	public void updateNodeProperties(SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
 
+		updateNodeProperties(Static, Dynamic, 0.1);
+
+	}
+
+
+	/**
+	 * Closure error of the step (m): change of the water stored in the inner control volumes, with the water content of the
+	 * retention curve, minus the net Darcy flux through the first and last faces. The boundary half cells are closed by the
+	 * definition of the boundary velocities.
+	 */
+	private double BalanceError(double dt, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
+
+		int N = Static.nodeZ.length - 1;
+
+		double storage = 0.0;
+		for(int i = 1; i < N; i++) {
+			storage = storage + (Static.nodeSoilType[i].WaterContent(Dynamic.SuctionNew[i]) - Static.nodeSoilType[i].WaterContent(Dynamic.SuctionOld[i])) *
+					Static.Stencil.Volume[i];
+		}
+
+		double qBot = -(Dynamic.HydConductivity[0] + Dynamic.HydConductivity[1]) / 2.0 * ((Dynamic.SuctionNew[1] - Dynamic.SuctionNew[0]) * Static.Stencil.InvDz[0] + 1.0);
+
+		double qTop = -(Dynamic.HydConductivity[N] + Dynamic.HydConductivity[N-1]) / 2.0 * ((Dynamic.SuctionNew[N] - Dynamic.SuctionNew[N-1]) * Static.Stencil.InvDz[N-1] + 1.0);
+
+		return storage - (qBot - qTop) * dt;
+
+	}
+
+
+	/**
+	 * Closure error of the last step and accumulated absolute error of the column.
+	 */
+	private void MonitorBalance(double dt, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
+
+		double error = BalanceError(dt, Static, Dynamic);
+
+		Dynamic.BalanceError = error;
+		Dynamic.CumulativeBalanceError = Dynamic.CumulativeBalanceError + Math.abs(error);
+
 		//Log
-		logger.trace("Call to updateNodeProperties(" + Static + "," + Dynamic + ").");
+		if(logger.isTraceEnabled()) logger.trace("Mass balance: dt= " + dt + ", closure error= " + error + " m");
 
-		//Loop for all the nodes
-		for(int i = 0; i < Dynamic.SuctionNew.length; i++) {
+	}
+
+
+	/**
+	 * Water content of the current iterate (mixed form), the storage term of the matrix is then theta(h) - theta_old and
+	 * the capacity only linearises its change, so the converged step conserves mass.
+	 */
+	private void updateWaterContent(SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
 
-			Static.nodeSoilType[i].InterpolateValuesFromTable(Dynamic, i);
+		for(int s = 0; s < Static.SegmentType.length; s++) {
+			SoilType type = Static.SegmentType[s];
+			for(int i = Static.SegmentStart[s]; i < Static.SegmentEnd[s]; i++) {
+				Dynamic.ThetaNew[i] = type.WaterContent(Dynamic.SuctionNew[i]);
+			}
+		}
+
+	}
+
+
+	/**
+	 * Hydraulic properties of all the nodes, relaxation is the weight of the previous iterate.
+	 */
+	private void updateNodeProperties(SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic, double relaxation) {
+
+		//Log
+		if(logger.isTraceEnabled()) logger.trace("Call to updateNodeProperties(" + Static + "," + Dynamic + ").");
+
+		//Loop for all the layers
+		for(int s = 0; s < Static.SegmentType.length; s++) {
+
+			Static.SegmentType[s].InterpolateSegment(Dynamic.SuctionTemp, Dynamic.SuctionNew, Dynamic.HydConductivity, Dynamic.Capacity,
+					Dynamic.ThetaNew, Dynamic.Saturation, Static.SegmentStart[s], Static.SegmentEnd[s], relaxation);
 
 		}		
 
@@ -320,107 +903,143 @@ public class Richards1D {
 	private void MatrixTerms(double dt, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
 
 		//Log
-		logger.trace("Call to MatrixTerms(" + dt + "," + Static + "," + Dynamic + ").");
+		if(logger.isTraceEnabled()) logger.trace("Call to MatrixTerms(" + dt + "," + Static + "," + Dynamic + ").");
 
 
 		//Finite differences
-
+		int nodesNumber = Static.nodeZ.length;
+		ColumnStencil stencil = Static.Stencil;
+		double invDt = 1.0 / dt;
+		double[] K = Dynamic.HydConductivity;
+		double[] C = Dynamic.Capacity;
+		double[] h = Dynamic.SuctionNew;
+		double[] theta = Dynamic.ThetaNew;
+		double[] thetaOld = Dynamic.ThetaOld;
 
 		//Bottom BC
-		int nodesNumber = Static.nodeZ.length;
+		BottomRow(stencil, invDt, K, C, h, theta, thetaOld, 0, 1, Diagonal, SourceTerm, DiagSupInf, Dynamic, ProjectBottomBoundaryCondition);
 
-		double dzA = 0.0;
-		double dzB = Static.nodeZ[1] - Static.nodeZ[0];
-		double dz = dzB / 2.0;
+		//Internal nodes
+		for(int i = 1; i < (nodesNumber - 1); i++) {
+			InternalRow(stencil, i, invDt, K, C, h, theta, thetaOld, i, 1, Diagonal, SourceTerm, DiagSupInf);
+		}
 
-		double ConA = 0.0;
-		double ConB = (Dynamic.HydConductivity[0] + Dynamic.HydConductivity[1] ) / 2.0; //Arithmetic average
-		double B = ConB * 1.0; //Grav
+		//Top BC
+		TopRow(stencil, invDt, K, C, h, Dynamic.SuctionOld, theta, thetaOld, nodesNumber - 1, 1, Diagonal, SourceTerm, Dynamic);
+		
+		//Boundary conditions switching
+		UpdateBoundaryConditions(dt, stencil, K, h, theta, thetaOld, 0, 1, Dynamic, ProjectBottomBoundaryCondition);
 
+	}
+
+
+	/**
+	 * Rows of the finite difference system of a column whose node i is stored in position base + i * stride of the arrays:
+	 * stride 1 for the column solver, the number of columns for the batched solver (Richards1DBatch). The bottom row is
+	 * written in position base, with the bottom flux of the model.
+	 */
+	static void BottomRow(ColumnStencil stencil, double invDt, double[] K, double[] C, double[] h, double[] theta, double[] thetaOld, int base, int stride,
+			double[] diagonal, double[] source, double[] supInf, SoilColumnDynamicVariables Dynamic, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		double ConB = (K[base] + K[base + stride]) / 2.0; //Arithmetic average
+		double B = ConB * 1.0; //Grav
 
-		DiagSupInf[0] = -ConB / dzB;
+		supInf[base] = -ConB * stencil.InvDz[0];
 
 		//Stream linkage
-		if(ProjectBottomBoundaryCondition.BottomBoundaryCondName.equals("FreeD")) {
-			Dynamic.botBoundCondInfiltration = true;
-			Dynamic.botBoundaryCondition = -B;
-			//Flow rate as a function of bottom pressure and a reference value GWL0L 
-		} else if(ProjectBottomBoundaryCondition.BottomBoundaryCondName.equals("qGWLF")) {
-			Dynamic.botBoundCondInfiltration = true;
-			Dynamic.botBoundaryCondition = Fqh(Dynamic.SuctionNew[0] - ProjectBottomBoundaryCondition.GWL0L,ProjectBottomBoundaryCondition.Aqh,ProjectBottomBoundaryCondition.Bqh);
-		} else if(ProjectBottomBoundaryCondition.BottomBoundaryCondName.equals("Dirichlet")) {
-			Dynamic.botBoundCondInfiltration = false;
-			Dynamic.botBoundaryCondition = ProjectBottomBoundaryCondition.SuctionBottom;
-		} else if(ProjectBottomBoundaryCondition.BottomBoundaryCondName.equals("von_Newman")) {
-			Dynamic.botBoundCondInfiltration = true;
-			Dynamic.botBoundaryCondition = ProjectBottomBoundaryCondition.FluxBottom;
-		}
-
-		double F2 = Dynamic.Capacity[0] *dz / dt;
+		BottomBoundaryFlux(B, h[base], Dynamic, ProjectBottomBoundaryCondition);
+
+		double storage = stencil.Volume[0] * invDt;
+		double F2 = C[base] * storage;
 
 		//First row matrix terms
-		DiagonalBottom = ConB / dzB + F2;
-		DiagonalInfBottom = -ConB/dzB;      
-		SourceTermBottom = B + F2*Dynamic.SuctionNew[0] - (Dynamic.ThetaNew[0] - Dynamic.ThetaOld[0]) * dz / dt + Dynamic.botBoundaryCondition;
+		diagonal[base] = ConB * stencil.InvDz[0] + F2;
+		source[base] = B + F2 * h[base] - (theta[base] - thetaOld[base]) * storage + Dynamic.botBoundaryCondition;
 
-		//Internal nodes
-		for(int i = 1; i < (nodesNumber - 1); i++) {
+	}
 
-			//Length
-			dzA = Static.nodeZ[i] - Static.nodeZ[i-1];
-			dzB = Static.nodeZ[i+1] - Static.nodeZ[i];
-			dz = (dzA + dzB) / 2.0;
 
-			//Hydraulic conductivities
-			ConA = (Dynamic.HydConductivity[i] + Dynamic.HydConductivity[i-1]) / 2.0;
-			ConB = (Dynamic.HydConductivity[i] + Dynamic.HydConductivity[i+1]) / 2.0;
+	/**
+	 * Row of the internal node i, in position k (neighbours in k - stride and k + stride).
+	 */
+	static void InternalRow(ColumnStencil stencil, int i, double invDt, double[] K, double[] C, double[] h, double[] theta, double[] thetaOld, int k, int stride,
+			double[] diagonal, double[] source, double[] supInf) {
 
-			B = (ConA-ConB) * 1.0;
-			F2 = Dynamic.Capacity[i] * dz / dt;
+		//Hydraulic conductivities
+		double ConA = (K[k] + K[k - stride]) / 2.0;
+		double ConB = (K[k] + K[k + stride]) / 2.0;
 
-			double A2 = ConA / dzA + ConB / dzB;
-			double A3 =-ConB / dzB;
+		double B = (ConA-ConB) * 1.0;
+		double storage = stencil.Volume[i] * invDt;
+		double F2 = C[k] * storage;
 
-			//Matrix terms values
-			Diagonal[i] = A2 + F2;
-			SourceTerm[i] = F2 * Dynamic.SuctionNew[i] - (Dynamic.ThetaNew[i] - Dynamic.ThetaOld[i]) * dz / dt - B;
-			DiagSupInf[i] = A3;
+		double A3 =-ConB * stencil.InvDz[i];
+		double A2 = ConA * stencil.InvDz[i-1] - A3;
 
-		}
+		//Matrix terms values
+		diagonal[k] = A2 + F2;
+		source[k] = F2 * h[k] - (theta[k] - thetaOld[k]) * storage - B;
+		supInf[k] = A3;
 
-		//Top BC
-		dzA = Static.nodeZ[nodesNumber - 1] - Static.nodeZ[nodesNumber - 2];
-		dz = dzA / 2.0;
-		ConA = (Dynamic.HydConductivity[nodesNumber - 1] + Dynamic.HydConductivity[nodesNumber - 2]) / 2.0;
+	}
 
-		B = ConA * 1.0;
 
-		F2 = Dynamic.Capacity[nodesNumber - 1] * dz / dt;
-		DiagonalTop = ConA / dzA + F2;
-		DiagonalSupBottom = - ConA / dzA;
-		SourceTermTop = F2 * Dynamic.SuctionNew[nodesNumber - 1] - (Dynamic.ThetaNew[nodesNumber - 1] - Dynamic.ThetaOld[nodesNumber -1]) * dz / dt - B;
+	/**
+	 * Row of the top node, in position kTop, with the rainfall and the ponding storage (hOld is the suction of the old level).
+	 */
+	static void TopRow(ColumnStencil stencil, double invDt, double[] K, double[] C, double[] h, double[] hOld, double[] theta, double[] thetaOld, int kTop, int stride,
+			double[] diagonal, double[] source, SoilColumnDynamicVariables Dynamic) {
 
-		double vTop = -DiagonalSupBottom * Dynamic.SuctionNew[nodesNumber - 2] - DiagonalTop * Dynamic.SuctionNew[nodesNumber - 1] + SourceTermTop;
+		int top = stencil.Volume.length - 1;
+		double ConA = (K[kTop] + K[kTop - stride]) / 2.0;
+
+		double B = ConA * 1.0;
+
+		double storage = stencil.Volume[top] * invDt;
+		double F2 = C[kTop] * storage;
+		diagonal[kTop] = ConA * stencil.InvDz[top - 1] + F2;
+		source[kTop] = F2 * h[kTop] - (theta[kTop] - thetaOld[kTop]) * storage - B;
 
 		//Source term adding rainfall
-		SourceTermTop = SourceTermTop - Dynamic.topBoundaryCondition;
+		source[kTop] = source[kTop] - Dynamic.topBoundaryCondition;
 
 		//Source term adding ponding
-		if(Dynamic.SuctionNew[nodesNumber - 1] > 0.0) {
-			DiagonalTop = DiagonalTop + 1.0 / dt;
-			SourceTermTop = SourceTermTop + Math.max(Dynamic.SuctionOld[nodesNumber - 1],0.0) / dt;
-		} else {
-			SourceTermTop = SourceTermTop + Math.max(Dynamic.SuctionOld[nodesNumber - 1],0.0) / dt;
+		if(h[kTop] > 0.0) {
+			diagonal[kTop] = diagonal[kTop] + invDt;
 		}
-		
-		
-		//Seepage face at the bottom
-		if(ProjectBottomBoundaryCondition.BottomBoundaryCondName.equals("SeepF")) {
+		source[kTop] = source[kTop] + Math.max(hOld[kTop],0.0) * invDt;
+
+	}
+
+
+	private static void BottomBoundaryFlux(double B, double hBottom, SoilColumnDynamicVariables Dynamic, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		//Type (von Newman or Dirichlet) and value imposed by the bottom model
+		InterfaceBottomBoundaryCondition BottomModel = ProjectBottomBoundaryCondition.BottomBoundaryModel;
+		Dynamic.botBoundCondInfiltration = BottomModel.FluxCondition(Dynamic.botBoundCondInfiltration);
+		Dynamic.botBoundaryCondition = BottomModel.Value(Dynamic.botBoundaryCondition, hBottom, B);
 
-			dz = Static.nodeZ[1] - Static.nodeZ[0];
+	}
+
+
+	/**
+	 * Seepage face and atmospheric boundary conditions switching of a column stored from position base with the given stride.
+	 */
+	static void UpdateBoundaryConditions(double dt, ColumnStencil stencil, double[] K, double[] h, double[] theta, double[] thetaOld, int base, int stride,
+			SoilColumnDynamicVariables Dynamic, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		//Number of nodes, bottom and top positions
+		int nodesNumber = stencil.Volume.length;
+		int k1 = base + stride;
+		int kTop = base + (nodesNumber - 1) * stride;
+		int kTop1 = kTop - stride;
+		double vTop;
 
-			double vBot = -(Dynamic.HydConductivity[0] + Dynamic.HydConductivity[1] ) / 2.0 * 
-					((Dynamic.SuctionNew[1] - Dynamic.SuctionNew[0]) / dz + 1.0) - dz / 2.0 *((Dynamic.ThetaNew[0] - Dynamic.ThetaOld[0]) / dt);
+		//Seepage face at the bottom
+		if(ProjectBottomBoundaryCondition.BottomBoundaryModel.SeepageFace()) {
+
+			double vBot = -(K[base] + K[k1] ) / 2.0 * 
+					((h[k1] - h[base]) * stencil.InvDz[0] + 1.0) - stencil.Volume[0] * (theta[base] - thetaOld[base]) / dt;
 
 			if(!Dynamic.botBoundCondInfiltration) {
 				if(vBot > 0.0) {
@@ -429,9 +1048,9 @@ public class Richards1D {
 				}
 
 			} else {
-				if(Dynamic.SuctionNew[1] > ProjectBottomBoundaryCondition.hSeep) {
+				if(h[k1] > ProjectBottomBoundaryCondition.hSeep) {
 					Dynamic.botBoundCondInfiltration = false;
-					Dynamic.SuctionNew[1] = ProjectBottomBoundaryCondition.hSeep;
+					h[k1] = ProjectBottomBoundaryCondition.hSeep;
 				}
 			}
 		}
@@ -442,9 +1061,9 @@ public class Richards1D {
 		if(!Dynamic.topBoundCondInfiltration) {
 
 
-			dz = Static.nodeZ[nodesNumber-1] - Static.nodeZ[nodesNumber-2];
-			vTop = -(Dynamic.HydConductivity[nodesNumber-1] + Dynamic.HydConductivity[nodesNumber-2] ) / 2.0 * 
-					((Dynamic.SuctionNew[nodesNumber-1] - Dynamic.SuctionNew[nodesNumber-2]) / dz + 1.0) - dz / 2.0 *((Dynamic.ThetaNew[nodesNumber-1] - Dynamic.ThetaOld[nodesNumber-1]) / dt);
+			vTop = -(K[kTop] + K[kTop1] ) / 2.0 * 
+					((h[kTop] - h[kTop1]) * stencil.InvDz[nodesNumber-2] + 1.0) -
+					stencil.Volume[nodesNumber-1] * (theta[kTop] - thetaOld[kTop]) / dt;
 
 
 			//Check continuity in surface         
@@ -455,7 +1074,7 @@ public class Richards1D {
 			}
 
 			//Too much infiltration
-			if(!Dynamic.topBoundCondInfiltration && Dynamic.SuctionNew[nodesNumber-1] <= (0.99*hCritA) && Dynamic.topBoundaryCondition < 0.0) {
+			if(!Dynamic.topBoundCondInfiltration && h[kTop] <= (0.99*hCritA) && Dynamic.topBoundaryCondition < 0.0) {
 				Dynamic.topBoundCondInfiltration = true;
 			}
 
@@ -464,7 +1083,7 @@ public class Richards1D {
 		} else {
 
 			//Too much infiltration
-			if(Dynamic.SuctionNew[nodesNumber-1] <= hCritA) {
+			if(h[kTop] <= hCritA) {
 				Dynamic.topBoundCondInfiltration = false;
 				Dynamic.topBoundaryCondition = hCritA;
 			}
@@ -476,77 +1095,618 @@ public class Richards1D {
 
 
 
-	private double Fqh(double GWL,double Aqh,double Bqh) {
-		return  (Aqh * Math.exp(Bqh*Math.abs(GWL)));
-	}	
-	
-	
+	/**
+	 * Newton iterations of the time step, same discrete equations as the Picard scheme but with the analytic
+	 * Jacobian (capacity and conductivity derivatives) and a backtracking line search on the residual norm.
+	 */
+	private double timeStepNewton(double TolTh, double TolH, int MaxIt, double dt, double dtMin, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic,
+			BottomBoundaryCondition ProjectBottomBoundaryCondition, boolean TopBoundaryType, boolean BotBoundaryType) {
+
+		//Number of nodes
+		int nodesNumber = Static.nodeZ.length;
+
+		int partialIteration = 0;
+		boolean ItCrit = false;
+		boolean propertiesUpdated = false;
+
+		while (!ItCrit) {
+
+			//Properties at the current iterate (no relaxation)
+			if(!propertiesUpdated) NewtonNodeProperties(Static, Dynamic);
+
+			//Boundary conditions of the current iterate
+			BottomBoundaryFlux((Dynamic.HydConductivity[0] + Dynamic.HydConductivity[1]) / 2.0, Dynamic.SuctionNew[0], Dynamic, ProjectBottomBoundaryCondition);
+			UpdateBoundaryConditions(dt, Static.Stencil, Dynamic.HydConductivity, Dynamic.SuctionNew, Dynamic.ThetaNew, Dynamic.ThetaOld, 0, 1, Dynamic,
+					ProjectBottomBoundaryCondition);
+			if(!Dynamic.botBoundCondInfiltration) Dynamic.SuctionNew[0] = ProjectBottomBoundaryCondition.SuctionBottom;
+
+			//Unknowns, Dirichlet nodes are fixed
+			int first = Dynamic.botBoundCondInfiltration ? 0 : 1;
+			int last = Dynamic.topBoundCondInfiltration ? nodesNumber - 1 : nodesNumber - 2;
+
+			//Newton system J * dh = -F
+			System.arraycopy(Dynamic.SuctionNew, 0, Dynamic.SuctionTemp, 0, nodesNumber);
+			double norm0 = NewtonResidual(dt, first, last, Static, Dynamic, ProjectBottomBoundaryCondition, true);
+
+			for(int i = first; i <= last; i++) Increment[i] = -Residual[i];
+			TridiagonalSolver(JacobianSub, Diagonal, JacobianSup, Increment, first, last);
+
+			//Line search
+			double lambda = 1.0;
+			for(int ls = 0; ls <= MaxLineSearch; ls++) {
+
+				for(int i = first; i <= last; i++) {
+					Dynamic.SuctionNew[i] = Dynamic.SuctionTemp[i] + lambda * Increment[i];
+					if(Math.abs(Dynamic.SuctionNew[i]) > rMax) Dynamic.SuctionNew[i] = Dynamic.SuctionNew[i] / Math.abs(Dynamic.SuctionNew[i]) * rMax;
+				}
+
+				//Last halving is accepted without checking
+				if(ls == MaxLineSearch) {
+					propertiesUpdated = false;
+					break;
+				}
+
+				NewtonNodeProperties(Static, Dynamic);
+				BottomBoundaryFlux((Dynamic.HydConductivity[0] + Dynamic.HydConductivity[1]) / 2.0, Dynamic.SuctionNew[0], Dynamic, ProjectBottomBoundaryCondition);
+				propertiesUpdated = true;
+
+				double norm = NewtonResidual(dt, first, last, Static, Dynamic, ProjectBottomBoundaryCondition, false);
+				if(norm <= (1.0 - 1.0E-4 * lambda) * norm0) break;
+
+				lambda = lambda * 0.5;
+			}
+
+			//Check top atmospheric conditions
+			if(Dynamic.SuctionNew[nodesNumber-1] < hCritA) Dynamic.SuctionNew[nodesNumber-1] = hCritA;
+
+			partialIteration = partialIteration + 1;
+			IterationCount = IterationCount + 1;
+
+			//Test for convergence, only full Newton steps
+			ItCrit = lambda == 1.0;
+
+			for(int i = 0; i < nodesNumber && ItCrit; i++) {
+
+				double EpsTh = 0.0;
+				double EpsH = 0.0;
+
+				if (Dynamic.SuctionTemp[i] < Static.nodeSoilType[i].SaturatedSuction && Dynamic.SuctionNew[i] < Static.nodeSoilType[i].SaturatedSuction) {
+					EpsTh = Math.abs(Dynamic.Capacity[i] * (Dynamic.SuctionNew[i] - Dynamic.SuctionTemp[i]) / (Static.nodeSoilType[i].qs - Static.nodeSoilType[i].qr));
+				} else {
+					EpsH = Math.abs(Dynamic.SuctionNew[i] - Dynamic.SuctionTemp[i]);
+				}
+
+				if( EpsTh > TolTh || EpsH > TolH || Math.abs(Dynamic.SuctionNew[i]) > (rMax*0.999)) {
+					ItCrit = false;
+					if(Math.abs(Dynamic.SuctionNew[i]) > (rMax*0.999)) partialIteration = MaxIt;
+				}
+			}
+
+			//Log
+			if(logger.isTraceEnabled()) logger.trace("Newton solver: dt= " + dt + ", iteration= " + String.format("%03d", partialIteration) + ", lambda= " + lambda + ", residual= " + norm0);
+
+			//Mass balance of the converged iterate
+			if(ItCrit && BalanceTolerance > 0.0 && Math.abs(BalanceError(dt, Static, Dynamic)) > BalanceTolerance) {
+				ItCrit = false;
+				BalanceIterations = BalanceIterations + 1;
+			}
+
+			if(ItCrit || partialIteration < MaxIt) continue;
+
+			//With minimal dt it should converge in MaxIt
+			if(dt <= dtMin) {
+
+				Converged = false;
+				LastIterations = partialIteration;
+
+				//Log
+				logger.error("Error in solver: The numerical solution has not converged! (" + dt + " < " + dtMin + ").");
+				System.out.println("Error in solver: The numerical solution has not converged! (" + dt + " < " + dtMin + ").");
+
+				return dt;
+			}
+
+			//Recover initial values and BC, reduce time step and restart
+			System.arraycopy(Dynamic.SuctionOld, 0, Dynamic.SuctionNew, 0, nodesNumber);
+			System.arraycopy(Dynamic.SuctionOld, 0, Dynamic.SuctionTemp, 0, nodesNumber);
+			Dynamic.topBoundCondInfiltration = TopBoundaryType;
+			Dynamic.botBoundCondInfiltration = BotBoundaryType;
+
+			dt = Math.max(dt / 3.0, dtMin);
+			if(Predictor != null) Predictor.Predict(dt, Dynamic);
+			partialIteration = 0;
+			propertiesUpdated = false;
+
+			//Log
+			if(logger.isTraceEnabled()) logger.trace("Solver reducing time step: dt_new= " + dt);
+
+		}
+
+		LastIterations = partialIteration;
+
+		//Water content is a function of the converged pressure, no Taylor correction needed
+		if(!propertiesUpdated) NewtonNodeProperties(Static, Dynamic);
+
+		//Euler step
+		CompleteStep(dt, dt, true, Dynamic.ThetaOld, Static, Dynamic);
+
+		return dt;
+
+	}
+
+
+	private void NewtonNodeProperties(SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
+
+		//Properties evaluated at the iterate itself
+		for(int i = 0; i < Dynamic.SuctionNew.length; i++) {
+			double h = Dynamic.SuctionNew[i];
+			Static.nodeSoilType[i].InterpolateValues(h, h, Dynamic.HydConductivity, Dynamic.Capacity, Dynamic.ThetaNew, Dynamic.Saturation, i);
+			HydConductivityDerivative[i] = Static.nodeSoilType[i].HydConductivityDerivative(h);
+		}
+
+	}
+
+
+	/**
+	 * Residual of the mass balance of nodes first to last and, optionally, its Jacobian (Diagonal, JacobianSub, JacobianSup).
+	 * Returns the euclidean norm of the residual.
+	 */
+	private double NewtonResidual(double dt, int first, int last, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic,
+			BottomBoundaryCondition ProjectBottomBoundaryCondition, boolean jacobian) {
+
+		int nodesNumber = Static.nodeZ.length;
+		double[] h = Dynamic.SuctionNew;
+		double[] K = Dynamic.HydConductivity;
+		double[] dK = HydConductivityDerivative;
+		double norm = 0.0;
+
+		//Stencil of the mesh
+		double[] invDz = Static.Stencil.InvDz;
+		double[] volume = Static.Stencil.Volume;
+		double invDt = 1.0 / dt;
+
+		for(int i = first; i <= last; i++) {
+
+			//Storage
+			double storage = volume[i] * invDt;
+			double F = (Dynamic.ThetaNew[i] - Dynamic.ThetaOld[i]) * storage;
+			double diag = Dynamic.Capacity[i] * storage;
+			double sub = 0.0;
+			double sup = 0.0;
+
+			//Flux from the node below
+			if(i > 0) {
+				double ConA = (K[i] + K[i-1]) / 2.0;
+				double gA = (h[i] - h[i-1]) * invDz[i-1] + 1.0;
+				F = F + ConA * gA;
+				diag = diag + 0.5 * dK[i] * gA + ConA * invDz[i-1];
+				sub = 0.5 * dK[i-1] * gA - ConA * invDz[i-1];
+			}
+
+			//Flux to the node above
+			if(i < nodesNumber - 1) {
+				double ConB = (K[i] + K[i+1]) / 2.0;
+				double gB = (h[i+1] - h[i]) * invDz[i] + 1.0;
+				F = F - ConB * gB;
+				diag = diag - 0.5 * dK[i] * gB + ConB * invDz[i];
+				sup = - 0.5 * dK[i+1] * gB - ConB * invDz[i];
+			}
+
+			//Bottom flux
+			if(i == 0) {
+				F = F - Dynamic.botBoundaryCondition;
+				diag = diag - ProjectBottomBoundaryCondition.BottomBoundaryModel.ValueDerivative(h[0], dK[0]);
+				sup = sup - ProjectBottomBoundaryCondition.BottomBoundaryModel.ValueDerivativeUpper(dK[1]);
+			}
+
+			//Rainfall and ponding at the top
+			if(i == nodesNumber - 1) {
+				F = F + Dynamic.topBoundaryCondition + (Math.max(h[i], 0.0) - Math.max(Dynamic.SuctionOld[i], 0.0)) * invDt;
+				if(h[i] > 0.0) diag = diag + invDt;
+			}
+
+			Residual[i] = F;
+			norm = norm + F * F;
+
+			if(jacobian) {
+				Diagonal[i] = diag;
+				JacobianSub[i] = sub;
+				JacobianSup[i] = sup;
+			}
+		}
+
+		return Math.sqrt(norm);
+
+	}
+
+
+	/**
+	 * Thomas algorithm for a general tridiagonal system of rows first to last, the solution overwrites rhs.
+	 */
+	private void TridiagonalSolver(double[] sub, double[] diag, double[] sup, double[] rhs, int first, int last) {
+
+		//Deep columns split across the workers
+		if(PartitionedSolver != null && last - first + 1 >= PartitionedSolver.MinNodes) {
+			PartitionedSolver.Solve(sub, diag, sup, rhs, first, last);
+			return;
+		}
+
+		//Forward
+		for(int i = first + 1; i <= last; i++) {
+			if(Math.abs(diag[i-1]) < rMin) diag[i-1] = rMin;
+			double w = sub[i] / diag[i-1];
+			diag[i] = diag[i] - w * sup[i-1];
+			rhs[i] = rhs[i] - w * rhs[i-1];
+		}
+
+		//Backward
+		if(Math.abs(diag[last]) < rMin) diag[last] = rMin;
+		rhs[last] = rhs[last] / diag[last];
+		for(int i = last - 1; i >= first; i--) {
+			rhs[i] = (rhs[i] - sup[i] * rhs[i+1]) / diag[i];
+		}
+
+	}
+
+
+	/**
+	 * Same linear system as TridiagonalGaussSolver written for the increment of the transformed variable u(h):
+	 * h = h_m + dh/du * du, the columns of the matrix are scaled by dh/du and the new suction is the exact inverse
+	 * transform of u_m + du. In the dry range the increments are logarithmic, so a wetting front does not overshoot.
+	 */
+	private void TransformedSolver(SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		//Number of nodes
+		int nodesNumber = Static.nodeZ.length;
+
+		//Dirichlet values and unknowns
+		if(!Dynamic.botBoundCondInfiltration) Dynamic.SuctionNew[0] = ProjectBottomBoundaryCondition.SuctionBottom;
+		int first = Dynamic.botBoundCondInfiltration ? 0 : 1;
+		int last = Dynamic.topBoundCondInfiltration ? nodesNumber - 1 : nodesNumber - 2;
+
+		//Derivatives of the transform
+		for(int i = 0; i < nodesNumber; i++) {
+			TransformDerivative[i] = Static.nodeSoilType[i].TransformedDerivative(Dynamic.SuctionNew[i]);
+		}
+
+		for(int i = first; i <= last; i++) {
+
+			//Row i of the matrix
+			double sub = 0.0;
+			double diag;
+			double sup = 0.0;
+			double rhs;
+
+			if(i == 0) {
+				diag = Diagonal[0];
+				sup = DiagSupInf[0];
+				rhs = SourceTerm[0];
+			} else if(i == nodesNumber - 1) {
+				sub = DiagSupInf[i-1];
+				diag = Diagonal[i];
+				rhs = SourceTerm[i];
+			} else {
+				sub = DiagSupInf[i-1];
+				diag = Diagonal[i];
+				sup = DiagSupInf[i];
+				rhs = SourceTerm[i];
+			}
+
+			//Residual of the current suction, increments of Dirichlet nodes are zero
+			Residual[i] = rhs - diag * Dynamic.SuctionNew[i];
+			if(i > 0) Residual[i] = Residual[i] - sub * Dynamic.SuctionNew[i-1];
+			if(i < nodesNumber - 1) Residual[i] = Residual[i] - sup * Dynamic.SuctionNew[i+1];
+
+			JacobianSub[i] = i > first ? sub * TransformDerivative[i-1] : 0.0;
+			Increment[i] = diag * TransformDerivative[i];
+			JacobianSup[i] = i < last ? sup * TransformDerivative[i+1] : 0.0;
+		}
+
+		TridiagonalSolver(JacobianSub, Increment, JacobianSup, Residual, first, last);
+
+		//Back transform, drying limited to a factor 10 of the suction per iteration
+		for(int i = first; i <= last; i++) {
+			SoilType soil = Static.nodeSoilType[i];
+			double u = soil.TransformedVariable(Dynamic.SuctionNew[i]);
+			double uNew = u + Residual[i];
+			if(uNew < soil.TransformSuction) uNew = Math.max(uNew, Math.min(u, soil.TransformSuction) + soil.TransformSuction * LN10);
+			Dynamic.SuctionNew[i] = soil.TransformedSuction(uNew);
+		}
+
+	}
+
+
+	/**
+	 * One Picard iteration in two sweeps, same operations as updateNodeProperties, MatrixTerms, TridiagonalGaussSolver,
+	 * the range checks and the convergence test. The upward sweep evaluates the properties of a layer and then assembles and
+	 * eliminates the rows of its nodes, one row behind the properties (a row needs the conductivity of the node above). The top row, the boundary
+	 * conditions switching and the top elimination follow, and the downward sweep substitutes back, checks the range of the
+	 * new suction and tests the increment of the node. Results in FusedNorm, FusedConverged and FusedDiverged.
+	 */
+	private void FusedIteration(double dt, double relaxation, double TolTh, double TolH, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic,
+			BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		int nodesNumber = Static.nodeZ.length;
+		ColumnStencil stencil = Static.Stencil;
+		double invDt = 1.0 / dt;
+		double[] h = Dynamic.SuctionNew;
+		double[] K = Dynamic.HydConductivity;
+		double[] C = Dynamic.Capacity;
+		double[] theta = Dynamic.ThetaNew;
+		double[] thetaOld = Dynamic.ThetaOld;
+
+		for(int s = 0; s < Static.SegmentType.length; s++) {
+
+			//Properties of the layer, then the suction of the iterate is the previous one of the next
+			SoilType type = Static.SegmentType[s];
+			int first = Static.SegmentStart[s];
+			int last = Static.SegmentEnd[s];
+			type.InterpolateSegment(Dynamic.SuctionTemp, h, K, C, theta, Dynamic.Saturation, first, last, relaxation);
+			if(MixedForm) {
+				for(int i = first; i < last; i++) theta[i] = type.WaterContent(h[i]);
+			}
+			System.arraycopy(h, first, Dynamic.SuctionTemp, first, last - first);
+
+			for(int i = first; i < last; i++) {
+
+				//Bottom row
+				if(i == 1) {
+
+					BottomRow(stencil, invDt, K, C, h, theta, thetaOld, 0, 1, Diagonal, SourceTerm, DiagSupInf, Dynamic, ProjectBottomBoundaryCondition);
+
+				//Internal row i - 1 and its forward elimination
+				} else if(i > 1) {
+
+					int r = i - 1;
+					InternalRow(stencil, r, invDt, K, C, h, theta, thetaOld, r, 1, Diagonal, SourceTerm, DiagSupInf);
+					if(r == 1) {
+						EliminateBottom(Diagonal, SourceTerm, DiagSupInf, h, 0, 1, Dynamic.botBoundCondInfiltration);
+					} else {
+						EliminateRow(Diagonal, SourceTerm, DiagSupInf, r, 1);
+					}
+
+				}
+
+			}
+		}
+
+		//Top row
+		int top = nodesNumber - 1;
+		TopRow(stencil, invDt, K, C, h, Dynamic.SuctionOld, theta, thetaOld, top, 1, Diagonal, SourceTerm, Dynamic);
+
+		//Boundary conditions switching, the top node is then eliminated
+		UpdateBoundaryConditions(dt, stencil, K, h, theta, thetaOld, 0, 1, Dynamic, ProjectBottomBoundaryCondition);
+		EliminateTop(Diagonal, SourceTerm, DiagSupInf, h, top, 1, Dynamic.topBoundCondInfiltration);
+
+		//Back substitution with the solution of the node above before the range checks
+		double norm = 0.0;
+		int failure = -1;
+		boolean failureDiverged = false;
+		boolean diverged = false;
+		double above = h[top];
+
+		for(int s = Static.SegmentType.length - 1; s >= 0; s--) {
+
+			//Limits of the layer
+			SoilType type = Static.SegmentType[s];
+			double saturatedSuction = type.SaturatedSuction;
+			double thetaRange = type.qs - type.qr;
+
+			for(int i = Static.SegmentEnd[s] - 1; i >= Static.SegmentStart[s]; i--) {
+
+				double hNew;
+				if(i == top) {
+					hNew = Dynamic.topBoundCondInfiltration ? SourceTerm[top] / Diagonal[top] : h[top];
+				} else if(i == top - 1 && !Dynamic.topBoundCondInfiltration) {
+					hNew = SourceTerm[i] / Diagonal[i];
+				} else if(i > 0) {
+					if(Math.abs(Diagonal[i]) < rMin) Diagonal[i] = rMin;
+					hNew = (SourceTerm[i] - DiagSupInf[i] * above) / Diagonal[i];
+				} else if(!Dynamic.botBoundCondInfiltration) {
+					hNew = ProjectBottomBoundaryCondition.SuctionBottom;
+				} else {
+					if(Math.abs(Diagonal[0]) < rMin) Diagonal[0] = rMin;
+					hNew = (SourceTerm[0] - DiagSupInf[0] * above) / Diagonal[0];
+				}
+				above = hNew;
+
+				//Range of the new suction
+				if(i == top && hNew < hCritA) hNew = hCritA;
+				if(Math.abs(hNew) > rMax) hNew = hNew / Math.abs(hNew) * rMax;
+				if(hNew < hCritA && i > nodesNumber * (9.0/10.0)) hNew = hCritA;
+				h[i] = hNew;
+
+				//Increment of the node
+				double hTemp = Dynamic.SuctionTemp[i];
+				double EpsTh = 0.0;
+				double EpsH = 0.0;
+
+				if(hTemp < saturatedSuction && hNew < saturatedSuction) {
+					double Th = theta[i] + C[i] * (hNew - hTemp) / thetaRange;
+					EpsTh = Math.abs(theta[i] - Th);
+				} else {
+					EpsH = Math.abs(hNew - hTemp);
+				}
+
+				boolean atMax = Math.abs(hNew) > (rMax*0.999);
+				if(EpsTh > TolTh || EpsH > TolH || atMax) {
+					failure = i;
+					failureDiverged = atMax;
+				}
+				diverged = diverged || atMax;
+
+				norm = Math.max(norm, Math.max(EpsTh / TolTh, EpsH / TolH));
+
+			}
+		}
+
+		//Without an iteration policy the test stops at the lowest failing node
+		FusedNorm = norm;
+		FusedConverged = failure < 0;
+		FusedDiverged = (IterationPolicy == null) ? failureDiverged : diverged;
+
+	}
+
+
 	private void TridiagonalGaussSolver(double dt, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
 		
 		
 		//Number of nodes
 		int nodesNumber = Static.nodeZ.length;
 
+		//Deep columns split across the workers
+		if(PartitionedSolver != null && nodesNumber >= PartitionedSolver.MinNodes) {
+			PartitionedGaussSolver(nodesNumber, Dynamic, ProjectBottomBoundaryCondition);
+			return;
+		}
+
+		double[] h = Dynamic.SuctionNew;
+
 		//Forward
 		
 		//Bottom
-	      if(!Dynamic.botBoundCondInfiltration) {
-	        SourceTerm[1] = SourceTerm[1]-DiagSupInf[0] * Dynamic.SuctionNew[0];
-	      } else {
-	        if(Math.abs(DiagonalBottom) < rMin) DiagonalBottom = rMin;
-	        SourceTerm[1] = SourceTerm[1] - SourceTermBottom * DiagSupInf[0] / DiagonalBottom;
-	        Diagonal[1] = Diagonal[1] - DiagonalInfBottom * DiagSupInf[0] / DiagonalBottom;
-	      }
+	      EliminateBottom(Diagonal, SourceTerm, DiagSupInf, h, 0, 1, Dynamic.botBoundCondInfiltration);
 	      
 	      //Internal
 	      for (int i = 2; i < (nodesNumber - 1); i++) {
-	        if(Math.abs(Diagonal[i-1]) < rMin) Diagonal[i-1] = rMin;
-	        SourceTerm[i] = SourceTerm[i] - SourceTerm[i-1] * DiagSupInf[i-1] / Diagonal[i-1];
-	        Diagonal[i] = Diagonal[i] - DiagSupInf[i-1] * DiagSupInf[i-1] / Diagonal[i-1];
+	        EliminateRow(Diagonal, SourceTerm, DiagSupInf, i, 1);
 	      }
 
 	      //Top
-	      if(!Dynamic.topBoundCondInfiltration) {
-	        SourceTerm[nodesNumber-2] = SourceTerm[nodesNumber-2] - DiagSupInf[nodesNumber-2] * Dynamic.SuctionNew[nodesNumber-1];
-	      }else{
-	        if(Math.abs(Diagonal[nodesNumber-2] ) < rMin) Diagonal[nodesNumber-2] = rMin;
-	        SourceTerm[nodesNumber - 1] = SourceTermTop - SourceTerm[nodesNumber-2] * DiagonalSupBottom / Diagonal[nodesNumber-2];
-	        Diagonal[nodesNumber - 1] = DiagonalTop - DiagSupInf[nodesNumber-2] * DiagonalSupBottom/Diagonal[nodesNumber-2];
-	      }
+	      EliminateTop(Diagonal, SourceTerm, DiagSupInf, h, nodesNumber - 1, 1, Dynamic.topBoundCondInfiltration);
 
 	//Backward
-	      if(Math.abs(Diagonal[nodesNumber-2]) < rMin) Diagonal[nodesNumber-2] = rMin;
 
 	      //Top
-	      if(!Dynamic.topBoundCondInfiltration) {
-	        //hNew(N)=hTop
-	    	  Dynamic.SuctionNew[nodesNumber-2] = SourceTerm[nodesNumber-2] / Diagonal[nodesNumber-2];
-	      } else {
-	    	  Dynamic.SuctionNew[nodesNumber-1] = SourceTerm[nodesNumber-1] / Diagonal[nodesNumber-1];
-	    	  Dynamic.SuctionNew[nodesNumber-2] = (SourceTerm[nodesNumber-2] - DiagSupInf[nodesNumber-2] * Dynamic.SuctionNew[nodesNumber-1]) / Diagonal[nodesNumber-2];
-	      }
+	      SubstituteTop(Diagonal, SourceTerm, DiagSupInf, h, nodesNumber - 1, 1, Dynamic.topBoundCondInfiltration);
 	      
 	      //Internal
 	      for (int i = (nodesNumber - 3); i > 0; i--) {
-
-	        if(Math.abs(Diagonal[i]) < rMin) Diagonal[i] = rMin;
-	        Dynamic.SuctionNew[i] = (SourceTerm[i] - DiagSupInf[i] * Dynamic.SuctionNew[i+1]) / Diagonal[i];
+	        SubstituteRow(Diagonal, SourceTerm, DiagSupInf, h, i, 1);
 	      }
 	      
-	      if(!Dynamic.botBoundCondInfiltration) {
-	    	  Dynamic.SuctionNew[0] = ProjectBottomBoundaryCondition.SuctionBottom;	        
-	      } else {
-	        if(Math.abs(DiagonalBottom) < rMin) DiagonalBottom = rMin;
-	        Dynamic.SuctionNew[0] = (SourceTermBottom - DiagonalInfBottom * Dynamic.SuctionNew[1]) / DiagonalBottom;
-	      }
+	      SubstituteBottom(Diagonal, SourceTerm, DiagSupInf, h, 0, 1, Dynamic.botBoundCondInfiltration, ProjectBottomBoundaryCondition.SuctionBottom);
 	      
 	}
+
+
+	/**
+	 * Same system as TridiagonalGaussSolver with the same boundary conditions handling: the bottom row is eliminated
+	 * into the first unknown row, a fixed top suction moves to the source term and a flux top row joins the system. The rows
+	 * in between are solved by the partitioned solver and the bottom node is recovered at the end.
+	 */
+	private void PartitionedGaussSolver(int nodesNumber, SoilColumnDynamicVariables Dynamic, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		EliminateBottom(Diagonal, SourceTerm, DiagSupInf, Dynamic.SuctionNew, 0, 1, Dynamic.botBoundCondInfiltration);
+
+		int last = nodesNumber - 2;
+		if(!Dynamic.topBoundCondInfiltration) {
+			SourceTerm[nodesNumber-2] = SourceTerm[nodesNumber-2] - DiagSupInf[nodesNumber-2] * Dynamic.SuctionNew[nodesNumber-1];
+		} else {
+			last = nodesNumber - 1;
+		}
+
+		//Lower diagonal of the rows, the Newton workspace is free in a Picard step
+		JacobianSub[1] = 0.0;
+		for(int i = 2; i < nodesNumber; i++) JacobianSub[i] = DiagSupInf[i-1];
+
+		PartitionedSolver.Solve(JacobianSub, Diagonal, DiagSupInf, SourceTerm, 1, last);
+		System.arraycopy(SourceTerm, 1, Dynamic.SuctionNew, 1, last);
+
+		SubstituteBottom(Diagonal, SourceTerm, DiagSupInf, Dynamic.SuctionNew, 0, 1, Dynamic.botBoundCondInfiltration, ProjectBottomBoundaryCondition.SuctionBottom);
+
+	}
+
+
+	/**
+	 * Forward elimination of the row in position k with the row below (position k - stride).
+	 */
+	static void EliminateRow(double[] diagonal, double[] source, double[] supInf, int k, int stride) {
+
+		int kBelow = k - stride;
+		if(Math.abs(diagonal[kBelow]) < rMin) diagonal[kBelow] = rMin;
+		source[k] = source[k] - source[kBelow] * supInf[kBelow] / diagonal[kBelow];
+		diagonal[k] = diagonal[k] - supInf[kBelow] * supInf[kBelow] / diagonal[kBelow];
+
+	}
+
+
+	/**
+	 * Back substitution of the row in position k with the suction above (position k + stride).
+	 */
+	static void SubstituteRow(double[] diagonal, double[] source, double[] supInf, double[] h, int k, int stride) {
+
+		if(Math.abs(diagonal[k]) < rMin) diagonal[k] = rMin;
+		h[k] = (source[k] - supInf[k] * h[k + stride]) / diagonal[k];
+
+	}
+
+
+	/**
+	 * Elimination of the bottom node (or of its fixed suction) from the first internal row.
+	 */
+	static void EliminateBottom(double[] diagonal, double[] source, double[] supInf, double[] h, int base, int stride, boolean infiltration) {
+
+		int k1 = base + stride;
+		if(!infiltration) {
+			source[k1] = source[k1] - supInf[base] * h[base];
+		} else {
+			EliminateRow(diagonal, source, supInf, k1, stride);
+		}
+
+	}
+
+
+	/**
+	 * Suction of the bottom node from the first internal one.
+	 */
+	static void SubstituteBottom(double[] diagonal, double[] source, double[] supInf, double[] h, int base, int stride, boolean infiltration, double suctionBottom) {
+
+		if(!infiltration) {
+			h[base] = suctionBottom;
+		} else {
+			SubstituteRow(diagonal, source, supInf, h, base, stride);
+		}
+
+	}
+
+
+	/**
+	 * Elimination of the top node (flux condition) or of its fixed suction from the last internal row.
+	 */
+	static void EliminateTop(double[] diagonal, double[] source, double[] supInf, double[] h, int kTop, int stride, boolean infiltration) {
+
+		int kTop1 = kTop - stride;
+		if(!infiltration) {
+			source[kTop1] = source[kTop1] - supInf[kTop1] * h[kTop];
+		} else {
+			EliminateRow(diagonal, source, supInf, kTop, stride);
+		}
+		if(Math.abs(diagonal[kTop1]) < rMin) diagonal[kTop1] = rMin;
+
+	}
+
+
+	/**
+	 * Suctions of the top node and of the last internal one.
+	 */
+	static void SubstituteTop(double[] diagonal, double[] source, double[] supInf, double[] h, int kTop, int stride, boolean infiltration) {
+
+		int kTop1 = kTop - stride;
+		if(!infiltration) {
+			h[kTop1] = source[kTop1] / diagonal[kTop1];
+		} else {
+			h[kTop] = source[kTop] / diagonal[kTop];
+			h[kTop1] = (source[kTop1] - supInf[kTop1] * h[kTop]) / diagonal[kTop1];
+		}
+
+	}
 	
 	
 	public void timeForward(double dt, double dtOld, SoilColumnStaticProperties Static, SoilColumnDynamicVariables Dynamic) {
 
 		//Log
-		logger.trace("Call to timeForward(" + dt + "," + dtOld + "," + Static + "," + Dynamic + ").");
+		if(logger.isTraceEnabled()) logger.trace("Call to timeForward(" + dt + "," + dtOld + "," + Static + "," + Dynamic + ").");
 
 		//Number of nodes
 		int nodesNumber = Static.nodeZ.length;
@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Picard solver of the Richards equation for a batch of columns with the same number of nodes.
+ *
+ * Column variables are stored interleaved in flat arrays (node-major, column-minor, index = node * size + column),
+ * so the matrix assembly, the Thomas sweep and the convergence test run over all the columns in lock-step. The rows,
+ * the boundary conditions and the elimination are those of the column solver (Richards1D, with the stride of the batch).
+ * A column leaves the lock-step as soon as it converges (not before the third iteration) or diverges, so an accepted
+ * column has the iterates of the column solver. Columns that do not converge in MaxIt iterations with the full time step
+ * are reported back to the caller, which solves them with the column solver and its time step reduction.
+ */
+public class Richards1DBatch {
+
+	//Logger
+	private static Logger logger;
+
+	//Columns of the batch and their raster cells
+	public int size;
+	public int nodesNumber;
+	public int[] cellX;
+	public int[] cellY;
+	private SoilColumn[] columns;
+	private ColumnStencil[] stencils;
+	private SoilColumnDynamicVariables[] dynamics;
+
+	//Column iterations done by this batch, a lock-step iteration counts once per active column (used by the column scheduler)
+	public long IterationCount = 0;
+
+	//Forcing of the batch columns (water depth and rainfall)
+	public double[] waterDepth;
+	public double[] precipitation;
+
+	//Flat column variables
+	private double[] SuctionOld;
+	private double[] SuctionTemp;
+	private double[] SuctionNew;
+	private double[] ThetaOld;
+	private double[] ThetaNew;
+	private double[] HydConductivity;
+	private double[] Capacity;
+	private double[] Saturation;
+	private SoilType[] nodeSoilType;
+
+	//Banded matrix storage, bottom and top rows included (same layout as Richards1D)
+	private double[] SourceTerm;
+	private double[] Diagonal;
+	private double[] DiagSupInf;
+
+	//Boundary conditions at the beginning of the step, one value per column (restored in the columns that are not accepted)
+	private double[] topBoundaryCondition;
+	private double[] botBoundaryCondition;
+	private boolean[] topBoundCondInfiltration;
+	private boolean[] botBoundCondInfiltration;
+
+	//Iteration control, one value per column
+	private boolean[] active;
+	private boolean[] accepted;
+
+	//Maximum ponding
+	private double MaxPondingDepth;
+
+
+	public Richards1DBatch(SoilColumn[] batchColumns, int[] batchCellX, int[] batchCellY, double maxPonding) {
+
+		//Create logger and log file
+		logger = Logger.getLogger("RiDI.Richards1DBatch");
+
+		//Batch members
+		columns = batchColumns;
+		cellX = batchCellX;
+		cellY = batchCellY;
+		size = batchColumns.length;
+		waterDepth = new double[size];
+		precipitation = new double[size];
+		nodesNumber = batchColumns[0].ColumnStaticProperties.nodeZ.length;
+
+		//Dim arrays
+		int length = nodesNumber * size;
+		SuctionOld = new double[length];
+		SuctionTemp = new double[length];
+		SuctionNew = new double[length];
+		ThetaOld = new double[length];
+		ThetaNew = new double[length];
+		HydConductivity = new double[length];
+		Capacity = new double[length];
+		Saturation = new double[length];
+		nodeSoilType = new SoilType[length];
+		SourceTerm = new double[length];
+		Diagonal = new double[length];
+		DiagSupInf = new double[length];
+
+		stencils = new ColumnStencil[size];
+		dynamics = new SoilColumnDynamicVariables[size];
+		topBoundaryCondition = new double[size];
+		botBoundaryCondition = new double[size];
+		topBoundCondInfiltration = new boolean[size];
+		botBoundCondInfiltration = new boolean[size];
+		active = new boolean[size];
+		accepted = new boolean[size];
+
+		//Maximum ponding
+		MaxPondingDepth = maxPonding;
+
+		//Static properties do not change during the simulation, store them once
+		for(int c = 0; c < size; c++) {
+			SoilColumnStaticProperties Static = columns[c].ColumnStaticProperties;
+			stencils[c] = Static.Stencil;
+			for(int i = 0; i < nodesNumber; i++) {
+				nodeSoilType[i * size + c] = Static.nodeSoilType[i];
+			}
+		}
+
+	}
+
+
+	/**
+	 * Advance all the columns of the batch dt seconds.
+	 * Returns, for every column, whether it converged; non converged columns keep their initial state.
+	 */
+	public boolean[] timeStep(double TolTh, double TolH, int MaxIt, double dt, double[] waterDepth, double[] precipitation, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		//Log
+		if(logger.isTraceEnabled()) logger.trace("Call to timeStep(" + dt + "), batch of " + size + " columns.");
+
+		int N = nodesNumber;
+
+		//Boundary conditions and initial values of every column
+		for(int c = 0; c < size; c++) {
+
+			SoilColumnDynamicVariables Dynamic = columns[c].ColumnDynamicVariables;
+
+			//Precipitation
+			Dynamic.topBoundaryCondition = - precipitation[c];
+
+			//Condition to control the ponding after 2D runoff
+			if (waterDepth[c] > 0.0) {
+				Dynamic.SuctionOld[N-1] = waterDepth[c];
+			}
+
+			//End of ponding (works for both BC and VG)
+			if(Dynamic.SuctionNew[N-1] > 0.0 && Dynamic.SuctionNew[N-1] < 0.00005 &&
+					Dynamic.topBoundaryCondition > 0.0) {
+				Dynamic.SuctionOld[N-1] = Dynamic.SuctionNew[N-1];
+			}
+
+			gather(c, Dynamic);
+
+		}
+
+		//Internal iterations, the active columns in lock-step
+		int partialIteration = 0;
+		int activeColumns = size;
+
+		while(activeColumns > 0 && partialIteration < MaxIt) {
+
+			//Hydraulic properties of every node
+			for(int k = 0; k < N * size; k++) {
+				if(active[k % size]) {
+					nodeSoilType[k].InterpolateValues(SuctionTemp[k], SuctionNew[k], HydConductivity, Capacity, ThetaNew, Saturation, k);
+				}
+			}
+
+			//Prepare matrix coefficients
+			MatrixTerms(dt, ProjectBottomBoundaryCondition);
+
+			//Internal Picard linealization
+			for(int k = 0; k < N * size; k++) {
+				if(active[k % size]) SuctionTemp[k] = SuctionNew[k];
+			}
+
+			//Matrix solver (updates hNew)
+			TridiagonalGaussSolver(ProjectBottomBoundaryCondition);
+
+			//Check top atmospheric conditions and results range
+			for(int c = 0; c < size; c++) {
+				if(active[c] && SuctionNew[(N-1) * size + c] < Richards1D.hCritA) SuctionNew[(N-1) * size + c] = Richards1D.hCritA;
+			}
+			for(int k = 0; k < N * size; k++) {
+				if(!active[k % size]) continue;
+				if(Math.abs(SuctionNew[k]) > Richards1D.rMax) {
+					SuctionNew[k] = SuctionNew[k] / Math.abs(SuctionNew[k]) * Richards1D.rMax;
+				}
+				if(SuctionNew[k] < Richards1D.hCritA && (k / size) > N * (9.0/10.0)) {
+					SuctionNew[k] = Richards1D.hCritA;
+				}
+			}
+
+			partialIteration = partialIteration + 1;
+			IterationCount = IterationCount + activeColumns;
+
+			//Test for convergence, as the column solver the lowest failing node decides
+			for(int c = 0; c < size; c++) {
+
+				if(!active[c]) continue;
+
+				boolean converged = true;
+				boolean diverged = false;
+
+				for(int k = c; k < N * size; k += size) {
+
+					double EpsTh = 0.0;
+					double EpsH = 0.0;
+
+					if (SuctionTemp[k] < nodeSoilType[k].SaturatedSuction && SuctionNew[k] < nodeSoilType[k].SaturatedSuction) {
+						double Th = ThetaNew[k] + Capacity[k] * (SuctionNew[k] - SuctionTemp[k]) / (nodeSoilType[k].qs - nodeSoilType[k].qr);
+						EpsTh = Math.abs(ThetaNew[k] - Th);
+					} else {
+						EpsH = Math.abs(SuctionNew[k] - SuctionTemp[k]);
+					}
+
+					if(EpsTh > TolTh || EpsH > TolH || Math.abs(SuctionNew[k]) > (Richards1D.rMax*0.999)) {
+						converged = false;
+						diverged = Math.abs(SuctionNew[k]) > (Richards1D.rMax*0.999);
+						break;
+					}
+				}
+
+				//Same minimum number of iterations as the column solver
+				if(diverged || (converged && partialIteration > 2)) {
+					active[c] = false;
+					accepted[c] = converged;
+					activeColumns = activeColumns - 1;
+				}
+
+			}
+
+			//Log
+			if(logger.isTraceEnabled()) logger.trace("Batch solver: dt= " + dt + ", iteration= " + String.format("%03d", partialIteration) + ", active columns= " + activeColumns);
+
+		}
+
+		//Update the converged columns, the others get back their boundary conditions
+		for(int c = 0; c < size; c++) {
+
+			SoilColumnDynamicVariables Dynamic = dynamics[c];
+
+			if(!accepted[c]) {
+				Dynamic.topBoundaryCondition = topBoundaryCondition[c];
+				Dynamic.botBoundaryCondition = botBoundaryCondition[c];
+				Dynamic.topBoundCondInfiltration = topBoundCondInfiltration[c];
+				Dynamic.botBoundCondInfiltration = botBoundCondInfiltration[c];
+				continue;
+			}
+
+			//Theta is computed as Taylor expansion of pressure (implicit term)
+			for(int i = 0; i < N; i++) {
+				int k = i * size + c;
+				ThetaNew[k] = ThetaNew[k] + Capacity[k] * (SuctionNew[k] - SuctionTemp[k]);
+			}
+
+			//Check the maximum ponding allowed
+			if(SuctionNew[(N-1) * size + c] > MaxPondingDepth) {
+				Dynamic.topBoundCondInfiltration = false;
+				SuctionNew[(N-1) * size + c] = MaxPondingDepth;
+			}
+
+			scatter(c, Dynamic);
+
+			//Update velocities
+			Richards1D.computeVelocity(dt, columns[c].ColumnStaticProperties, Dynamic);
+
+		}
+
+		return accepted;
+
+	}
+
+
+	private void gather(int c, SoilColumnDynamicVariables Dynamic) {
+
+		for(int i = 0; i < nodesNumber; i++) {
+			int k = i * size + c;
+			SuctionOld[k] = Dynamic.SuctionOld[i];
+			SuctionTemp[k] = Dynamic.SuctionTemp[i];
+			SuctionNew[k] = Dynamic.SuctionNew[i];
+			ThetaOld[k] = Dynamic.ThetaOld[i];
+		}
+
+		dynamics[c] = Dynamic;
+		topBoundaryCondition[c] = Dynamic.topBoundaryCondition;
+		botBoundaryCondition[c] = Dynamic.botBoundaryCondition;
+		topBoundCondInfiltration[c] = Dynamic.topBoundCondInfiltration;
+		botBoundCondInfiltration[c] = Dynamic.botBoundCondInfiltration;
+		active[c] = true;
+		accepted[c] = false;
+
+	}
+
+
+	private void scatter(int c, SoilColumnDynamicVariables Dynamic) {
+
+		for(int i = 0; i < nodesNumber; i++) {
+			int k = i * size + c;
+			Dynamic.SuctionTemp[i] = SuctionTemp[k];
+			Dynamic.SuctionNew[i] = SuctionNew[k];
+			Dynamic.ThetaNew[i] = ThetaNew[k];
+			Dynamic.HydConductivity[i] = HydConductivity[k];
+			Dynamic.Capacity[i] = Capacity[k];
+			Dynamic.Saturation[i] = Saturation[k];
+		}
+
+	}
+
+
+	private void MatrixTerms(double dt, BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		int N = nodesNumber;
+		double invDt = 1.0 / dt;
+
+		//Bottom BC
+		for(int c = 0; c < size; c++) {
+			if(!active[c]) continue;
+			Richards1D.BottomRow(stencils[c], invDt, HydConductivity, Capacity, SuctionNew, ThetaNew, ThetaOld, c, size,
+					Diagonal, SourceTerm, DiagSupInf, dynamics[c], ProjectBottomBoundaryCondition);
+		}
+
+		//Internal nodes, all the columns in lock-step
+		for(int i = 1; i < (N - 1); i++) {
+			int k0 = i * size;
+			for(int c = 0; c < size; c++) {
+				if(!active[c]) continue;
+				Richards1D.InternalRow(stencils[c], i, invDt, HydConductivity, Capacity, SuctionNew, ThetaNew, ThetaOld, k0 + c, size,
+						Diagonal, SourceTerm, DiagSupInf);
+			}
+		}
+
+		//Top BC and boundary conditions switching
+		for(int c = 0; c < size; c++) {
+			if(!active[c]) continue;
+			Richards1D.TopRow(stencils[c], invDt, HydConductivity, Capacity, SuctionNew, SuctionOld, ThetaNew, ThetaOld, (N - 1) * size + c, size,
+					Diagonal, SourceTerm, dynamics[c]);
+			Richards1D.UpdateBoundaryConditions(dt, stencils[c], HydConductivity, SuctionNew, ThetaNew, ThetaOld, c, size, dynamics[c],
+					ProjectBottomBoundaryCondition);
+		}
+
+	}
+
+
+	private void TridiagonalGaussSolver(BottomBoundaryCondition ProjectBottomBoundaryCondition) {
+
+		int N = nodesNumber;
+
+		//Forward, bottom
+		for(int c = 0; c < size; c++) {
+			if(active[c]) Richards1D.EliminateBottom(Diagonal, SourceTerm, DiagSupInf, SuctionNew, c, size, dynamics[c].botBoundCondInfiltration);
+		}
+
+		//Forward, internal nodes in lock-step
+		for(int i = 2; i < (N - 1); i++) {
+			int k0 = i * size;
+			for(int c = 0; c < size; c++) {
+				if(active[c]) Richards1D.EliminateRow(Diagonal, SourceTerm, DiagSupInf, k0 + c, size);
+			}
+		}
+
+		//Forward top and backward top
+		for(int c = 0; c < size; c++) {
+			if(!active[c]) continue;
+			int kTop = (N - 1) * size + c;
+			Richards1D.EliminateTop(Diagonal, SourceTerm, DiagSupInf, SuctionNew, kTop, size, dynamics[c].topBoundCondInfiltration);
+			Richards1D.SubstituteTop(Diagonal, SourceTerm, DiagSupInf, SuctionNew, kTop, size, dynamics[c].topBoundCondInfiltration);
+		}
+
+		//Backward, internal nodes in lock-step
+		for(int i = (N - 3); i > 0; i--) {
+			int k0 = i * size;
+			for(int c = 0; c < size; c++) {
+				if(active[c]) Richards1D.SubstituteRow(Diagonal, SourceTerm, DiagSupInf, SuctionNew, k0 + c, size);
+			}
+		}
+
+		//Backward, bottom
+		for(int c = 0; c < size; c++) {
+			if(active[c]) Richards1D.SubstituteBottom(Diagonal, SourceTerm, DiagSupInf, SuctionNew, c, size, dynamics[c].botBoundCondInfiltration,
+					ProjectBottomBoundaryCondition.SuctionBottom);
+		}
+
+	}
+
+}
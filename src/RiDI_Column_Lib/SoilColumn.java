@@ -63,9 +63,9 @@ public class SoilColumn {
 		//Log
 		logger.info("Call to CreateColumnNodes(" + numNodes + UnitsCatalog.class + SoilsCatalog.class + ").");		
 		
-		//Create column nodes variables and properties
-		ColumnDynamicVariables.CreateColumnNodes(numNodes);
+		//Create column nodes properties first, the unit mesh gives the number of nodes
 		ColumnStaticProperties.CreateColumnNodes(numNodes, BasinUnitsCatalog, BasinSoilsCatalog);
+		ColumnDynamicVariables.CreateColumnNodes(ColumnStaticProperties.nodeZ.length);
 		
 	}
 	
@@ -126,37 +126,31 @@ public class SoilColumn {
 			//Loop over column values
 			int N = ColumnDynamicVariables.SuctionNew.length;
 			double vi = 0.0;
-			double dz = 0.0;
+			ColumnStencil stencil = ColumnStaticProperties.Stencil;
 
 			for(int i = (N - 1); i >= 0; i--) {
 
 				if(i == 0) {
-					dz = ColumnStaticProperties.nodeZ[1] - ColumnStaticProperties.nodeZ[0];	
 					vi = - (ColumnDynamicVariables.HydConductivity[0] + ColumnDynamicVariables.HydConductivity[1]) / 2.0 * 
-							( (ColumnDynamicVariables.SuctionNew[1] - ColumnDynamicVariables.SuctionNew[0]) / dz + 1.0);
+							( (ColumnDynamicVariables.SuctionNew[1] - ColumnDynamicVariables.SuctionNew[0]) * stencil.InvDz[0] + 1.0);
 
 				} else if(i == (N - 1)) {
 
 					int N1 = N - 2;
-					dz = ColumnStaticProperties.nodeZ[(N - 1)] - ColumnStaticProperties.nodeZ[N1];
-
 
 					vi = - (ColumnDynamicVariables.HydConductivity[N - 1] + ColumnDynamicVariables.HydConductivity[N1]) / 2.0 * 
-							( (ColumnDynamicVariables.SuctionNew[N - 1] - ColumnDynamicVariables.SuctionNew[N1]) / dz + 1.0) -
-							(ColumnDynamicVariables.ThetaNew[N-1] -ColumnDynamicVariables.ThetaOld[N-1]) * (dz/2.0) / dt;
+							( (ColumnDynamicVariables.SuctionNew[N - 1] - ColumnDynamicVariables.SuctionNew[N1]) * stencil.InvDz[N1] + 1.0) -
+							(ColumnDynamicVariables.ThetaNew[N-1] -ColumnDynamicVariables.ThetaOld[N-1]) * stencil.Volume[N-1] / dt;
 
 				} else {
 
-					double dzA = ColumnStaticProperties.nodeZ[i+1] - ColumnStaticProperties.nodeZ[i];
-					double dzB = ColumnStaticProperties.nodeZ[i] - ColumnStaticProperties.nodeZ[i-1];
-
 					double vA = - (ColumnDynamicVariables.HydConductivity[i] + ColumnDynamicVariables.HydConductivity[i+1]) / 2.0 *
-							( (ColumnDynamicVariables.SuctionNew[i+1] - ColumnDynamicVariables.SuctionNew[i]) / dzA + 1.0);
+							( (ColumnDynamicVariables.SuctionNew[i+1] - ColumnDynamicVariables.SuctionNew[i]) * stencil.InvDz[i] + 1.0);
 
 					double vB = - (ColumnDynamicVariables.HydConductivity[i] + ColumnDynamicVariables.HydConductivity[i-1]) / 2.0 *
-							( (ColumnDynamicVariables.SuctionNew[i] - ColumnDynamicVariables.SuctionNew[i-1]) / dzB + 1.0);
+							( (ColumnDynamicVariables.SuctionNew[i] - ColumnDynamicVariables.SuctionNew[i-1]) * stencil.InvDz[i-1] + 1.0);
 
-					vi = (vA * dzA + vB * dzB) / (dzA + dzB);
+					vi = (vA * stencil.Dz[i] + vB * stencil.Dz[i-1]) * 0.5 * stencil.InvVolume[i];
 
 				}
 				
@@ -259,12 +253,11 @@ public class SoilColumn {
 
 
 			int M = N-1;
-			double dzN = ColumnStaticProperties.nodeZ[N-1] - ColumnStaticProperties.nodeZ[M-1];
+			ColumnStencil stencil = ColumnStaticProperties.Stencil;
 			double vT = -(ColumnDynamicVariables.HydConductivity[N-1] + ColumnDynamicVariables.HydConductivity[M-1]) /2.0 *
-					((ColumnDynamicVariables.SuctionNew[N-1] - ColumnDynamicVariables.SuctionNew[M-1]) / dzN + 1.0) - (ColumnDynamicVariables.ThetaNew[N-1] - ColumnDynamicVariables.ThetaOld[N-1]) * dzN/2.0 / dt;
+					((ColumnDynamicVariables.SuctionNew[N-1] - ColumnDynamicVariables.SuctionNew[M-1]) * stencil.InvDz[M-1] + 1.0) - (ColumnDynamicVariables.ThetaNew[N-1] - ColumnDynamicVariables.ThetaOld[N-1]) * stencil.Volume[N-1] / dt;
 
-			double dz1 = ColumnStaticProperties.nodeZ[1] - ColumnStaticProperties.nodeZ[0];
-			double vB = -(ColumnDynamicVariables.HydConductivity[0] + ColumnDynamicVariables.HydConductivity[1]) /2.0 *((ColumnDynamicVariables.SuctionNew[1] - ColumnDynamicVariables.SuctionNew[0]) / dz1 + 1.0) + (ColumnDynamicVariables.ThetaNew[0]-ColumnDynamicVariables.ThetaOld[0])* dz1/2.0/dt;
+			double vB = -(ColumnDynamicVariables.HydConductivity[0] + ColumnDynamicVariables.HydConductivity[1]) /2.0 *((ColumnDynamicVariables.SuctionNew[1] - ColumnDynamicVariables.SuctionNew[0]) * stencil.InvDz[0] + 1.0) + (ColumnDynamicVariables.ThetaNew[0]-ColumnDynamicVariables.ThetaOld[0])* stencil.Volume[0]/dt;
 
 			double vTopW = vT;
 
@@ -302,8 +295,7 @@ public class SoilColumn {
 
 			for(int i = (N - 2); i >= 0; i--) {
 				int j = i + 1;
-				double dz = ColumnStaticProperties.nodeZ[j] - ColumnStaticProperties.nodeZ[i];
-				double VNewi = dz * (ColumnDynamicVariables.ThetaNew[i] + ColumnDynamicVariables.ThetaNew[j]) / 2.0;
+				double VNewi = stencil.Dz[i] * (ColumnDynamicVariables.ThetaNew[i] + ColumnDynamicVariables.ThetaNew[j]) / 2.0;
 				Volume = Volume + VNewi;
 			}
 
@@ -53,6 +53,50 @@ public class SoilColumnDynamicVariables {
 	public boolean topBoundCondInfiltration = true;
 	public boolean botBoundCondInfiltration = true;
 	
+	//Adaptive time step memory (last proposed step, 0 if none, and its normalised error)
+	public double StepSize = 0.0;
+	public double StepError = 1.0;
+	
+	//Time the column is ahead of the basin clock after a dry redistribution step
+	public double TimeAhead = 0.0;
+	
+	//Activity tracker: water content change in the last basin step, sleeping state and time slept
+	public double Activity = 0.0;
+	public boolean Asleep = false;
+	public double SleepTime = 0.0;
+	
+	//Predictor history: last two converged levels, their step lengths, number of levels stored and order of the next prediction
+	public double[] SuctionHistory1;
+	public double[] SuctionHistory2;
+	public double StepHistory1 = 0.0;
+	public double StepHistory2 = 0.0;
+	public int HistoryLevels = 0;
+	public int PredictorOrder = 1;
+	
+	//Multistep history: water content of the last two levels, their step lengths and number of levels stored, and local truncation error of the last step (-1 if unknown)
+	public double[] ThetaHistory1;
+	public double[] ThetaHistory2;
+	public double ThetaStep1 = 0.0;
+	public double ThetaStep2 = 0.0;
+	public int ThetaLevels = 0;
+	public double TruncationError = -1.0;
+	
+	//Mass balance monitor: closure error of the last step and sum of the absolute errors (m)
+	public double BalanceError = 0.0;
+	public double CumulativeBalanceError = 0.0;
+	
+	//Regime fast path: water content change left out by the steps skipped as steady and their time (s), rainfall boundary
+	//condition and largest water content change of the last step (NaN until the first step)
+	public double SteadyDrift = 0.0;
+	public double SteadyTime = 0.0;
+	public double SteadyForcing = Double.NaN;
+	public double StepThetaChange = Double.NaN;
+	
+	//Failure policy: the column has failed a step and is solved with the fallback solver, rainfall depth dropped by the
+	//steps it has held (m)
+	public boolean Degraded = false;
+	public double DiscardedForcing = 0.0;
+	
 	//Logger
     private static Logger logger;
     
@@ -99,4 +143,133 @@ public class SoilColumnDynamicVariables {
 		velOld = DoubleArray.copy(velNew);
 
 	}
+
+	public void CreatePredictorHistory() {
+
+		SuctionHistory1 = DoubleArray.copy(SuctionOld);
+		SuctionHistory2 = DoubleArray.copy(SuctionOld);
+
+	}
+
+	public void CreateMultistepHistory() {
+
+		ThetaHistory1 = DoubleArray.copy(ThetaOld);
+		ThetaHistory2 = DoubleArray.copy(ThetaOld);
+
+	}
+
+	/**
+	 * Use the hydrology arrays of another column (same unit, initial condition and forcing), the safety factors stay per column.
+	 */
+	public void ShareHydrology(SoilColumnDynamicVariables Source) {
+
+		SuctionOld = Source.SuctionOld;
+		SuctionTemp = Source.SuctionTemp;
+		SuctionNew = Source.SuctionNew;
+		ThetaOld = Source.ThetaOld;
+		ThetaNew = Source.ThetaNew;
+		Saturation = Source.Saturation;
+		HydConductivity = Source.HydConductivity;
+		Capacity = Source.Capacity;
+		velOld = Source.velOld;
+		velNew = Source.velNew;
+		SuctionHistory1 = Source.SuctionHistory1;
+		SuctionHistory2 = Source.SuctionHistory2;
+		ThetaHistory1 = Source.ThetaHistory1;
+		ThetaHistory2 = Source.ThetaHistory2;
+
+		CopyHydrologyState(Source);
+
+	}
+
+	/**
+	 * Copy the scalar hydrology state (water table and boundary conditions) of another column.
+	 */
+	public void CopyHydrologyState(SoilColumnDynamicVariables Source) {
+
+		WaterTable = Source.WaterTable;
+		topBoundaryCondition = Source.topBoundaryCondition;
+		botBoundaryCondition = Source.botBoundaryCondition;
+		topBoundCondInfiltration = Source.topBoundCondInfiltration;
+		botBoundCondInfiltration = Source.botBoundCondInfiltration;
+		StepHistory1 = Source.StepHistory1;
+		StepHistory2 = Source.StepHistory2;
+		HistoryLevels = Source.HistoryLevels;
+		PredictorOrder = Source.PredictorOrder;
+		ThetaStep1 = Source.ThetaStep1;
+		ThetaStep2 = Source.ThetaStep2;
+		ThetaLevels = Source.ThetaLevels;
+		TruncationError = Source.TruncationError;
+		BalanceError = Source.BalanceError;
+		CumulativeBalanceError = Source.CumulativeBalanceError;
+		SteadyDrift = Source.SteadyDrift;
+		SteadyTime = Source.SteadyTime;
+		SteadyForcing = Source.SteadyForcing;
+		StepThetaChange = Source.StepThetaChange;
+		Degraded = Source.Degraded;
+		DiscardedForcing = Source.DiscardedForcing;
+
+	}
+
+	/**
+	 * Copy the whole hydrology state of another column into the arrays of this one, allocated on the first copy.
+	 */
+	public void CopyState(SoilColumnDynamicVariables Source) {
+
+		SuctionOld = CopyArray(Source.SuctionOld, SuctionOld);
+		SuctionTemp = CopyArray(Source.SuctionTemp, SuctionTemp);
+		SuctionNew = CopyArray(Source.SuctionNew, SuctionNew);
+		ThetaOld = CopyArray(Source.ThetaOld, ThetaOld);
+		ThetaNew = CopyArray(Source.ThetaNew, ThetaNew);
+		Saturation = CopyArray(Source.Saturation, Saturation);
+		HydConductivity = CopyArray(Source.HydConductivity, HydConductivity);
+		Capacity = CopyArray(Source.Capacity, Capacity);
+		velOld = CopyArray(Source.velOld, velOld);
+		velNew = CopyArray(Source.velNew, velNew);
+		SuctionHistory1 = CopyArray(Source.SuctionHistory1, SuctionHistory1);
+		SuctionHistory2 = CopyArray(Source.SuctionHistory2, SuctionHistory2);
+		ThetaHistory1 = CopyArray(Source.ThetaHistory1, ThetaHistory1);
+		ThetaHistory2 = CopyArray(Source.ThetaHistory2, ThetaHistory2);
+
+		CopyHydrologyState(Source);
+		StepSize = Source.StepSize;
+		StepError = Source.StepError;
+
+	}
+
+	private static double[] CopyArray(double[] source, double[] target) {
+
+		if(source == null) return null;
+		if(target == null || target.length != source.length) return DoubleArray.copy(source);
+
+		System.arraycopy(source, 0, target, 0, source.length);
+		return target;
+
+	}
+
+	/**
+	 * Own copies of the shared hydrology arrays, the column is solved again by itself.
+	 */
+	public void DetachHydrology() {
+
+		SuctionOld = DoubleArray.copy(SuctionOld);
+		SuctionTemp = DoubleArray.copy(SuctionTemp);
+		SuctionNew = DoubleArray.copy(SuctionNew);
+		ThetaOld = DoubleArray.copy(ThetaOld);
+		ThetaNew = DoubleArray.copy(ThetaNew);
+		Saturation = DoubleArray.copy(Saturation);
+		HydConductivity = DoubleArray.copy(HydConductivity);
+		Capacity = DoubleArray.copy(Capacity);
+		velOld = DoubleArray.copy(velOld);
+		velNew = DoubleArray.copy(velNew);
+		if(SuctionHistory1 != null) {
+			SuctionHistory1 = DoubleArray.copy(SuctionHistory1);
+			SuctionHistory2 = DoubleArray.copy(SuctionHistory2);
+		}
+		if(ThetaHistory1 != null) {
+			ThetaHistory1 = DoubleArray.copy(ThetaHistory1);
+			ThetaHistory2 = DoubleArray.copy(ThetaHistory2);
+		}
+
+	}
 }
@@ -21,7 +21,7 @@ import org.apache.log4j.Logger;
 public class SoilColumnStaticProperties {
 
 	//Basin unit where the column belongs
-	private static int columnUnit;
+	private int columnUnit;
 	
 	//Logger
     private static Logger logger;
@@ -31,9 +31,15 @@ public class SoilColumnStaticProperties {
 	private String[] nodeSoilTypeName;
 	public SoilType[] nodeSoilType;
 	public double[] nodeZ;
+	public ColumnStencil Stencil;
 	public double columnDepth;
 	public double maxCondHyd = 0.0;
 	
+	//Layer segments, nodes SegmentStart[s] to SegmentEnd[s] - 1 are of soil SegmentType[s] (bottom to top)
+	public int[] SegmentStart;
+	public int[] SegmentEnd;
+	public SoilType[] SegmentType;
+	
 	public SoilColumnStaticProperties(int UnitType) {
 
         //Create logger and log file
@@ -49,24 +55,72 @@ public class SoilColumnStaticProperties {
 		logger.info("Call to CreateColumnNodes(" + numNodes + "," + BasinUnitsCatalog + "," + BasinSoilsCatalog + ").");
 		
 		
+		//Node coordinates of the unit mesh
+		nodeZ = BasinUnitsCatalog.getUnitNodeZ(columnUnit, numNodes);
+		Stencil = BasinUnitsCatalog.getUnitStencil(columnUnit, numNodes);
+		numNodes = nodeZ.length;
+		
 		//Dim variables
 		nodeSoilTypeName = new String[numNodes];
 		nodeSoilType = new SoilType[numNodes];
-		nodeZ = new double[numNodes];
 		columnDepth = BasinUnitsCatalog.getUnitDepth(columnUnit);
 
 		//Loop to identify node soil type
         for (int i = 0; i < nodeSoilType.length; i++) {
-        	nodeZ[i] = UnitsCatalog.getNodeZ(columnUnit,numNodes,i);
-        	nodeSoilTypeName[i] = UnitsCatalog.getNodeSoilName(columnUnit,numNodes,i);
+        	nodeSoilTypeName[i] = UnitsCatalog.getSoilNameByZ(columnUnit,nodeZ[i]);
         	nodeSoilType[i] = BasinSoilsCatalog.getSoilType(nodeSoilTypeName[i]);
         	
         	maxCondHyd = Math.max(maxCondHyd, nodeSoilType[i].Ks);
         }
+        
+        CreateLayerSegments();
+		
+	}
+	
+	/**
+	 * Replace the column mesh (dynamic mesh adaptation), the node arrays are new arrays since a unit mesh may be shared.
+	 */
+	public void setColumnNodes(double[] auxNodeZ, SoilType[] auxNodeSoilType) {
+		
+		nodeZ = auxNodeZ;
+		Stencil = new ColumnStencil(nodeZ);
+		nodeSoilType = auxNodeSoilType;
+		nodeSoilTypeName = new String[nodeZ.length];
+		for (int i = 0; i < nodeSoilType.length; i++) {
+			nodeSoilTypeName[i] = nodeSoilType[i].TypeName;
+		}
+		
+		CreateLayerSegments();
+		
+	}
+	
+	/**
+	 * Runs of consecutive nodes of the same soil type.
+	 */
+	private void CreateLayerSegments() {
+		
+		int segments = 1;
+		for (int i = 1; i < nodeSoilType.length; i++) {
+			if(nodeSoilType[i] != nodeSoilType[i-1]) segments++;
+		}
+		
+		SegmentStart = new int[segments];
+		SegmentEnd = new int[segments];
+		SegmentType = new SoilType[segments];
+		
+		int s = 0;
+		for (int i = 1; i <= nodeSoilType.length; i++) {
+			if(i == nodeSoilType.length || nodeSoilType[i] != nodeSoilType[i-1]) {
+				SegmentEnd[s] = i;
+				SegmentType[s] = nodeSoilType[i-1];
+				if(s + 1 < segments) SegmentStart[s + 1] = i;
+				s++;
+			}
+		}
 		
 	}
 	
-    public static int getColumnUnit() {
+    public int getColumnUnit() {
 
     	//Create logger and log file
 		logger.info("Call to getColumnUnit().");
@@ -67,6 +67,9 @@ public class SoilType {
 	//Computed values
 	public double SaturatedSuction;
 	
+	//Suction below which the transformed solver uses the log-suction variable (inflection of the retention curve)
+	public double TransformSuction;
+	
 	//Table used for hydraulic properties fast interpolation during computations
 	private InterpolationTable soilPropertiesTable;
 	
@@ -76,6 +79,7 @@ public class SoilType {
 		//Columns
 		public double suctionValues[];
 		public double hydCondValues[];
+		public double hydCondDerivativeValues[];
 		public double capacityValues[];
 		public double waterContentValues[];
 		public double saturationValues[];
@@ -91,6 +95,7 @@ public class SoilType {
 			
 			suctionValues = new double[NumberRows];
 			hydCondValues = new double[NumberRows];
+			hydCondDerivativeValues = new double[NumberRows];
 			capacityValues = new double[NumberRows];
 			waterContentValues = new double[NumberRows];
 			saturationValues = new double[NumberRows];
@@ -132,11 +137,19 @@ public class SoilType {
 		//Loop for all the rows (suction values) in the table
 		for (int i=0; i< NumberRowsTab; i++) {
 			soilPropertiesTable.hydCondValues[i]      = SRCmodel.HydraulicConductivity(soilPropertiesTable.suctionValues[i],this);
+			soilPropertiesTable.hydCondDerivativeValues[i] = SRCmodel.HydraulicConductivityDerivative(soilPropertiesTable.suctionValues[i],this);
 			soilPropertiesTable.capacityValues[i]     = SRCmodel.WaterCapacity(soilPropertiesTable.suctionValues[i],this);
 			soilPropertiesTable.waterContentValues[i] =SRCmodel.WaterContent(soilPropertiesTable.suctionValues[i],this);
 			soilPropertiesTable.saturationValues[i]   = SRCmodel.Saturation(soilPropertiesTable.suctionValues[i],this);        		            
 		}
 		
+		//Switch of the transformed variable, row of maximum capacity (not wetter than 1 cm)
+		int iMax = 0;
+		for (int i=1; i< NumberRowsTab; i++) {
+			if(soilPropertiesTable.capacityValues[i] > soilPropertiesTable.capacityValues[iMax]) iMax = i;
+		}
+		TransformSuction = Math.min(soilPropertiesTable.suctionValues[iMax], -0.01);
+		
 		//Store table parameters
 		soilPropertiesTable.MinSuc = MinSucTab;
 		soilPropertiesTable.MaxSuc = MaxSucTab;
@@ -223,11 +236,40 @@ public class SoilType {
 	
 	public void InterpolateValuesFromTable(SoilColumnDynamicVariables ColumnDynamicVariables, int i) {
 
+		InterpolateValuesFromTable(ColumnDynamicVariables, i, 0.1);
+
+	}
+
+
+	/**
+	 * Same as InterpolateValuesFromTable(ColumnDynamicVariables, i) with the weight of the previous iterate given (relaxation).
+	 */
+	public void InterpolateValuesFromTable(SoilColumnDynamicVariables ColumnDynamicVariables, int i, double relaxation) {
+
 		//Log
-		logger.debug("Call to InterpolateValuesFromTable(" + ColumnDynamicVariables + "," + i + ").");
+		if(logger.isDebugEnabled()) logger.debug("Call to InterpolateValuesFromTable(" + ColumnDynamicVariables + "," + i + ").");
+
+		InterpolateValues(ColumnDynamicVariables.SuctionTemp[i], ColumnDynamicVariables.SuctionNew[i], ColumnDynamicVariables.HydConductivity,
+				ColumnDynamicVariables.Capacity, ColumnDynamicVariables.ThetaNew, ColumnDynamicVariables.Saturation, i, relaxation);
+
+	}
+
+
+	/**
+	 * Hydraulic properties for a (previous, new) suction pair, written in position k of the given arrays.
+	 * Shared by the column solver and the batched solver, which stores several columns in the same arrays.
+	 */
+	public void InterpolateValues(double suctionTemp, double suctionNew, double[] HydConductivityValues, double[] CapacityValues,
+			double[] ThetaValues, double[] SaturationValues, int k) {
+
+		InterpolateValues(suctionTemp, suctionNew, HydConductivityValues, CapacityValues, ThetaValues, SaturationValues, k, 0.1);
+
+	}
+
+
+	public void InterpolateValues(double suctionTemp, double suctionNew, double[] HydConductivityValues, double[] CapacityValues,
+			double[] ThetaValues, double[] SaturationValues, int k, double relaxation) {
 
-		double suctionNew = ColumnDynamicVariables.SuctionNew[i];
-		double suctionTemp = ColumnDynamicVariables.SuctionTemp[i];
 		double HydConductivity;
 		double Capacity;
 		double Theta;
@@ -239,8 +281,8 @@ public class SoilType {
 		double hi2 = Math.min(SaturatedSuction, suctionNew);
 		double alh1= Math.log10(-soilPropertiesTable.MinSuc);
 
-		//Relaxed new guess value, relaxation factor 10%
-		double hiM = 0.1 * hi1 + 0.9 * hi2;
+		//Relaxed new guess value, relaxation factor 10% by default
+		double hiM = relaxation * hi1 + (1.0 - relaxation) * hi2;
 
 
 		//Compute the hydraulic properties associated to new suction value, use interpolation tables or exact equation
@@ -272,14 +314,145 @@ public class SoilType {
 
 		}
 
-		//Assign new values to column
-		ColumnDynamicVariables.HydConductivity[i] = HydConductivity;
-		ColumnDynamicVariables.Capacity[i] = Capacity;
-		ColumnDynamicVariables.ThetaNew[i] = Theta;
-		ColumnDynamicVariables.Saturation[i] = Saturation;
+		//Assign new values
+		HydConductivityValues[k] = HydConductivity;
+		CapacityValues[k] = Capacity;
+		ThetaValues[k] = Theta;
+		SaturationValues[k] = Saturation;
 
 		
 	}
+
+
+	/**
+	 * Same as InterpolateValues for the nodes first to last - 1 of a layer of this soil, with the table and its limits
+	 * read once for the whole layer.
+	 */
+	public void InterpolateSegment(double[] suctionTemp, double[] suctionNew, double[] HydConductivityValues, double[] CapacityValues,
+			double[] ThetaValues, double[] SaturationValues, int first, int last, double relaxation) {
+
+		//Table and limits of the layer
+		double[] suction = soilPropertiesTable.suctionValues;
+		double[] hydCond = soilPropertiesTable.hydCondValues;
+		double[] capacity = soilPropertiesTable.capacityValues;
+		double[] waterContent = soilPropertiesTable.waterContentValues;
+		double[] saturation = soilPropertiesTable.saturationValues;
+		double minSuc = soilPropertiesTable.MinSuc;
+		double maxSuc = soilPropertiesTable.MaxSuc;
+		double incSuction = soilPropertiesTable.incSuction;
+		double alh1 = Math.log10(-minSuc);
+		double saturatedSuction = SaturatedSuction;
+
+		for(int k = first; k < last; k++) {
+
+			double hi1 = Math.min(saturatedSuction, suctionTemp[k]);
+			double hi2 = Math.min(saturatedSuction, suctionNew[k]);
+			double hiM = relaxation * hi1 + (1.0 - relaxation) * hi2;
+
+			if(hi1 >= saturatedSuction && hi2 >= saturatedSuction) {
+
+				HydConductivityValues[k] = Ks;
+				CapacityValues[k] = 0.0;
+				ThetaValues[k] = qs;
+				SaturationValues[k] = 1.0;
+
+			} else if (hiM > maxSuc && hiM <= minSuc) {
+
+				int iT = (int) ((Math.log10(-hiM) - alh1) / incSuction);
+				double dh = (hiM - suction[iT]) / (suction[iT+1] - suction[iT]);
+
+				HydConductivityValues[k] = hydCond[iT] + (hydCond[iT+1] - hydCond[iT]) * dh;
+				CapacityValues[k] = capacity[iT] + (capacity[iT+1] - capacity[iT]) * dh;
+				ThetaValues[k] = waterContent[iT] + (waterContent[iT+1] - waterContent[iT]) * dh;
+				SaturationValues[k] = saturation[iT] + (saturation[iT+1] - saturation[iT]) * dh;
+
+			//Exact function out of the table
+			} else {
+
+				HydConductivityValues[k] = SRCmodel.HydraulicConductivity(hiM, this);
+				CapacityValues[k] = SRCmodel.WaterCapacity(hiM, this);
+				ThetaValues[k] = SRCmodel.WaterContent(hiM, this);
+				SaturationValues[k] = SRCmodel.Saturation(hiM, this);
+
+			}
+		}
+
+	}
+	
+	/**
+	 * Derivative of the hydraulic conductivity with respect to suction, used by the Newton solver Jacobian.
+	 */
+	public double HydConductivityDerivative(double suction) {
+
+		//Saturated
+		if(suction >= SaturatedSuction) return 0.0;
+
+		//Interpolation table or exact derivative outside the table range
+		if (suction > soilPropertiesTable.MaxSuc && suction <= soilPropertiesTable.MinSuc) {
+
+			int iT = (int) ((Math.log10(-suction) - Math.log10(-soilPropertiesTable.MinSuc)) / soilPropertiesTable.incSuction); 
+			double dh = (suction - soilPropertiesTable.suctionValues[iT]) / (soilPropertiesTable.suctionValues[iT+1] - soilPropertiesTable.suctionValues[iT]);
+
+			return soilPropertiesTable.hydCondDerivativeValues[iT] + (soilPropertiesTable.hydCondDerivativeValues[iT+1] - soilPropertiesTable.hydCondDerivativeValues[iT]) * dh;
+		}
+
+		return SRCmodel.HydraulicConductivityDerivative(suction, this);
+
+	}
+	
+	/**
+	 * Water content of a suction value, interpolation table or exact equation as in InterpolateValues.
+	 */
+	public double WaterContent(double suction) {
+
+		//Saturated
+		if(suction >= SaturatedSuction) return qs;
+
+		if (suction > soilPropertiesTable.MaxSuc && suction <= soilPropertiesTable.MinSuc) {
+
+			int iT = (int) ((Math.log10(-suction) - Math.log10(-soilPropertiesTable.MinSuc)) / soilPropertiesTable.incSuction); 
+			double dh = (suction - soilPropertiesTable.suctionValues[iT]) / (soilPropertiesTable.suctionValues[iT+1] - soilPropertiesTable.suctionValues[iT]);
+
+			return soilPropertiesTable.waterContentValues[iT] + (soilPropertiesTable.waterContentValues[iT+1] - soilPropertiesTable.waterContentValues[iT]) * dh;
+		}
+
+		return SRCmodel.WaterContent(suction, this);
+
+	}
+	
+	/**
+	 * Transformed variable of a suction value: the suction itself above TransformSuction and a logarithmic variable below it,
+	 * continuous with its first derivative at the switch.
+	 */
+	public double TransformedVariable(double suction) {
+
+		if(suction >= TransformSuction) return suction;
+
+		return TransformSuction * (1.0 + Math.log(suction / TransformSuction));
+
+	}
+
+	/**
+	 * Suction of a transformed variable value, inverse of TransformedVariable.
+	 */
+	public double TransformedSuction(double variable) {
+
+		if(variable >= TransformSuction) return variable;
+
+		return TransformSuction * Math.exp(Math.min(variable / TransformSuction - 1.0, 700.0));
+
+	}
+
+	/**
+	 * Derivative of the suction with respect to the transformed variable.
+	 */
+	public double TransformedDerivative(double suction) {
+
+		if(suction >= TransformSuction) return 1.0;
+
+		return suction / TransformSuction;
+
+	}
 	
 	public double Suction(double saturation) {
 		
@@ -60,7 +60,8 @@ public class StabilityFactor {
          */
         for (int y = 0; y < iNY; y++) {
             for (int x = 0; x < iNX; x++) {
-            	for (int z = 0; z < ProjectBasin.numNodes; z++){
+            	if (ProjectBasin.BasinSoilColumns[x][y] == null) continue;
+            	for (int z = 0; z < ProjectBasin.BasinSoilColumns[x][y].ColumnStaticProperties.nodeZ.length; z++){
             		ComputeStability(x, y, z);
             	}
             	
@@ -75,7 +76,7 @@ public class StabilityFactor {
        
 	
 		//Log
-		logger.trace("Call to ComputeStability(" + i + "," + j + "," + k + ").");
+		if(logger.isTraceEnabled()) logger.trace("Call to ComputeStability(" + i + "," + j + "," + k + ").");
 
 		
 
@@ -147,7 +148,7 @@ public class StabilityFactor {
 	       
 		
 		//Log
-		logger.trace("Call to ComputeMinStability(" + i + "," + j + ").");
+		if(logger.isTraceEnabled()) logger.trace("Call to ComputeMinStability(" + i + "," + j + ").");
 
 		//Find min
 		double min_FOS_Sat = DoubleArray.max(ProjectBasin.BasinSoilColumns[i][j].ColumnDynamicVariables.FOS_sat);
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Predictor of the initial guess of the nonlinear solver. The suction of the next time step is extrapolated from the
+ * current one and the last two converged levels kept in the column dynamic variables, with a constant (order 0),
+ * linear (order 1) or quadratic (order 2) polynomial. A ponded top node is predicted from the surface water balance.
+ * In the adaptive mode every column uses the order which best predicted its last step.
+ */
+public class SuctionPredictor {
+
+    //Logger
+    private static Logger logger;
+
+	//Highest extrapolation order
+	public int MaxOrder;
+
+	//Choose the order from the error of the last prediction
+	public boolean Adaptive;
+
+
+	public SuctionPredictor(String predictorName) {
+
+        //Create logger and log file
+        logger = Logger.getLogger("RiDI.SuctionPredictor");
+
+        //Log
+        logger.info("Call to SuctionPredictor(" + predictorName + ").");
+
+        Adaptive = predictorName.equals("Adaptive");
+        MaxOrder = predictorName.equals("Linear") ? 1 : 2;
+
+	}
+
+
+	/**
+	 * Initial guess (SuctionNew) of a step of length dt from the current level (SuctionOld) and the history.
+	 */
+	public void Predict(double dt, SoilColumnDynamicVariables Dynamic) {
+
+		int order = Math.min(Adaptive ? Dynamic.PredictorOrder : MaxOrder, Dynamic.HistoryLevels);
+
+		int nodesNumber = Dynamic.SuctionOld.length;
+		int iBot = Dynamic.botBoundCondInfiltration ? 0 : 1;
+		int iTop = Dynamic.topBoundCondInfiltration ? nodesNumber : nodesNumber - 1;
+
+		for (int i = iBot; i < iTop; i++) {
+			Dynamic.SuctionNew[i] = Extrapolate(order, dt, i, Dynamic);
+		}
+
+		//Ponding depth from the rainfall and the infiltration of the last step
+		if(Dynamic.topBoundCondInfiltration && Dynamic.SuctionOld[nodesNumber-1] > 0.0) {
+			double ponding = Dynamic.SuctionOld[nodesNumber-1] + dt * (-Dynamic.topBoundaryCondition + Dynamic.velNew[nodesNumber-1]);
+			if(ponding > 0.0) Dynamic.SuctionNew[nodesNumber-1] = ponding;
+		}
+
+	}
+
+
+	/**
+	 * Store the converged step of length dt in the history and choose the order of the next prediction.
+	 */
+	public void Record(double dt, SoilColumnDynamicVariables Dynamic) {
+
+		int nodesNumber = Dynamic.SuctionOld.length;
+
+		//Error of every available order for the step just solved
+		if(Adaptive) {
+
+			int best = 0;
+			double bestError = Double.MAX_VALUE;
+
+			for (int order = 0; order <= Math.min(MaxOrder, Dynamic.HistoryLevels); order++) {
+
+				double error = 0.0;
+				for (int i = 0; i < nodesNumber; i++) {
+					error = Math.max(error, Math.abs(Dynamic.SuctionNew[i] - Extrapolate(order, dt, i, Dynamic)));
+				}
+
+				if(error < bestError) {
+					bestError = error;
+					best = order;
+				}
+			}
+
+			Dynamic.PredictorOrder = best;
+
+			//Log
+			if(logger.isTraceEnabled()) logger.trace("Predictor order: " + best + ", error= " + bestError + " m");
+
+		}
+
+		//Shift the history
+		System.arraycopy(Dynamic.SuctionHistory1, 0, Dynamic.SuctionHistory2, 0, nodesNumber);
+		System.arraycopy(Dynamic.SuctionOld, 0, Dynamic.SuctionHistory1, 0, nodesNumber);
+		Dynamic.StepHistory2 = Dynamic.StepHistory1;
+		Dynamic.StepHistory1 = dt;
+		Dynamic.HistoryLevels = Math.min(Dynamic.HistoryLevels + 1, 2);
+
+	}
+
+
+	/**
+	 * Newton form of the interpolation polynomial through the current level and the history, evaluated dt ahead.
+	 * Only unsaturated values are extrapolated, the pressure of a saturated node is kept.
+	 */
+	private double Extrapolate(int order, double dt, int i, SoilColumnDynamicVariables Dynamic) {
+
+		double h0 = Dynamic.SuctionOld[i];
+		if(order == 0 || h0 >= 0.0) return h0;
+
+		double h1 = Dynamic.SuctionHistory1[i];
+		if(h1 >= 0.0) return h0;
+
+		//Do not extrapolate further than twice the last step
+		double d1 = Dynamic.StepHistory1;
+		double tau = Math.min(dt, 2.0 * d1);
+
+		double f01 = (h0 - h1) / d1;
+		if(order == 1) return h0 + f01 * tau;
+
+		double h2 = Dynamic.SuctionHistory2[i];
+		if(h2 >= 0.0) return h0 + f01 * tau;
+
+		double d2 = Dynamic.StepHistory2;
+		double f012 = (f01 - (h1 - h2) / d2) / (d1 + d2);
+
+		return h0 + f01 * tau + f012 * tau * (tau + d1);
+
+	}
+
+}
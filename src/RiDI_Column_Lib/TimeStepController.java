@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib;
+
+import org.apache.log4j.Logger;
+
+/**
+ * PI time step controller of the Richards solver. The error of a step is the largest of the water content change
+ * (or the local truncation error estimated by the solver, when it has a target) and the number of nonlinear iterations,
+ * both normalised by their targets. The proposed step is kept in the
+ * column dynamic variables, so every column grows or shrinks its own step.
+ */
+public class TimeStepController {
+
+    //Logger
+    private static Logger logger;
+
+	//Step limits
+	public double dtMin;
+	public double dtMax;
+
+	//Targets of the normalised error
+	public double ThetaTarget = 0.01;
+	public double IterationTarget;
+	public double TruncationTarget = 0.0;
+
+	//PI gains, safety factor and step change limits
+	public double kI = 0.3;
+	public double kP = 0.4;
+	public double Safety = 0.9;
+	public double MaxGrowth = 2.0;
+	public double MaxShrink = 0.2;
+
+
+	public TimeStepController(double dtMin, double dtMax, int MaxIt) {
+
+        //Create logger and log file
+        logger = Logger.getLogger("RiDI.TimeStepController");
+
+        this.dtMin = dtMin;
+        this.dtMax = dtMax;
+
+        //The Picard scheme always runs three iterations
+        IterationTarget = Math.max(3.0, MaxIt / 3.0);
+
+	}
+
+
+	/**
+	 * Step to try, the last proposed one or dt (at most dtMax) for a column without history.
+	 */
+	public double ProposedStep(double dt, SoilColumnDynamicVariables Dynamic) {
+
+		if(Dynamic.StepSize > 0.0) return Dynamic.StepSize;
+
+		return Math.min(dt, dtMax);
+
+	}
+
+
+	/**
+	 * Propose the next step after an accepted step of length dt. A step reduced by the solver is never followed by a larger one,
+	 * a step shortened to reach a synchronisation time does not reduce the proposed step.
+	 */
+	public void Update(double dt, boolean reduced, boolean shortened, int iterations, SoilColumnDynamicVariables Dynamic) {
+
+		//Largest change of water content
+		double deltaTheta = 0.0;
+		for(int i = 0; i < Dynamic.ThetaNew.length; i++) {
+			deltaTheta = Math.max(deltaTheta, Math.abs(Dynamic.ThetaNew[i] - Dynamic.ThetaOld[i]));
+		}
+
+		//Normalised error, the truncation error replaces the water content change when it is known
+		double error = Math.max(deltaTheta / ThetaTarget, iterations / IterationTarget);
+		if(TruncationTarget > 0.0 && Dynamic.TruncationError >= 0.0) error = Math.max(Dynamic.TruncationError / TruncationTarget, iterations / IterationTarget);
+		error = Math.max(error, 1.0E-3);
+
+		//PI factor
+		double factor = Safety * Math.pow(error, -kI) * Math.pow(Dynamic.StepError / error, kP);
+		factor = Math.min(Math.max(factor, MaxShrink), MaxGrowth);
+		if(reduced) factor = Math.min(factor, 1.0);
+
+		double dtNew = dt * factor;
+		if(shortened && !reduced && error <= 1.0) dtNew = Math.max(dtNew, Dynamic.StepSize);
+
+		Dynamic.StepSize = Math.min(Math.max(dtNew, dtMin), dtMax);
+		Dynamic.StepError = error;
+
+		//Log
+		if(logger.isTraceEnabled()) logger.trace("Time step controller: dt= " + dt + ", iterations= " + iterations + ", dTheta= " + deltaTheta + ", dt_new= " + Dynamic.StepSize);
+
+	}
+
+}
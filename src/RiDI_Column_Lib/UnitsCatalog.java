@@ -34,6 +34,12 @@ public class UnitsCatalog {
 	static private int numberOfTypes;
 	private String inputFileName;
 	
+	//Unit meshes: element size at the surface (0 for evenly spaced nodes) and growth factor of the elements downwards
+	private double meshSpacing = 0.0;
+	private double meshGrading = 1.0;
+	private TreeMap<Integer, double[]> unitMeshes = new TreeMap<Integer, double[]>();
+	private TreeMap<Integer, ColumnStencil> unitStencils = new TreeMap<Integer, ColumnStencil>();
+	
     //Logger
     private static Logger logger;
 
@@ -150,6 +156,102 @@ public class UnitsCatalog {
 
 	}
 	
+	public void setMeshResolution(double spacing, double grading) {
+		
+		//Log
+		logger.info("Call to setMeshResolution(" + spacing + "," + grading + ").");
+		
+		meshSpacing = spacing;
+		meshGrading = Math.max(grading, 1.0);
+		unitMeshes.clear();
+		unitStencils.clear();
+		
+	}
+	
+	/**
+	 * Node Z coordinates of a unit, from the bottom. With no mesh spacing the unit gets numNodes evenly spaced nodes,
+	 * otherwise the elements start at meshSpacing at the surface and grow by meshGrading downwards, and the nearest
+	 * node of every layer interface is moved onto it (or a node is added when it already holds another interface).
+	 */
+	public double[] getUnitNodeZ(int columnUnit, int numNodes) {
+		
+		//Log
+		logger.trace("Call to getUnitNodeZ(" + columnUnit + "," + numNodes + ").");
+		
+		//The mesh is shared by all the columns of the unit
+		if (unitMeshes.containsKey(columnUnit)) return unitMeshes.get(columnUnit);
+		
+		if (meshSpacing <= 0.0) {
+			double[] auxZ = new double[numNodes];
+			for (int i = 0; i < numNodes; i++) auxZ[i] = getNodeZ(columnUnit, numNodes, i);
+			unitMeshes.put(columnUnit, auxZ);
+			return auxZ;
+		}
+		
+		UnitType auxUnitType = BasinUnitTypes.get(columnUnit);
+		double depth = auxUnitType.SoilDepth;
+		
+		//Graded nodes from the surface, the last element is between 0.5 and 1.5 times its size
+		ArrayList<Double> nodes = new ArrayList<Double>();
+		double dz = meshSpacing;
+		double z = depth;
+		nodes.add(0.0);
+		nodes.add(depth);
+		while (z - dz > 0.5 * dz) {
+			z = z - dz;
+			nodes.add(z);
+			dz = dz * meshGrading;
+		}
+		Collections.sort(nodes);
+		
+		//Layer interfaces, the soil of the first layer starts at the bottom
+		boolean[] snapped = new boolean[nodes.size()];
+		ArrayList<Double> added = new ArrayList<Double>();
+		for (int j = 1; j < auxUnitType.Z_fin.length; j++) {
+			
+			double interfaceZ = auxUnitType.Z_fin[j];
+			if (Double.isNaN(interfaceZ) || interfaceZ <= 0.0 || interfaceZ >= depth) continue;
+			
+			//Nearest inner node
+			int nearest = 1;
+			for (int i = 2; i < nodes.size() - 1; i++) {
+				if (Math.abs(nodes.get(i) - interfaceZ) < Math.abs(nodes.get(nearest) - interfaceZ)) nearest = i;
+			}
+			
+			if (nodes.size() > 2 && !snapped[nearest]) {
+				nodes.set(nearest, interfaceZ);
+				snapped[nearest] = true;
+			} else if (!nodes.contains(interfaceZ)) {
+				added.add(interfaceZ);
+			}
+		}
+		nodes.addAll(added);
+		Collections.sort(nodes);
+		
+		//At least one inner node
+		if (nodes.size() < 3) nodes.add(1, 0.5 * depth);
+		
+		double[] auxZ = new double[nodes.size()];
+		for (int i = 0; i < auxZ.length; i++) auxZ[i] = nodes.get(i);
+		
+		logger.info("Unit " + columnUnit + " mesh: " + auxZ.length + " nodes, surface element " + (auxZ[auxZ.length - 1] - auxZ[auxZ.length - 2]) + " m.");
+		unitMeshes.put(columnUnit, auxZ);
+		
+		return auxZ;
+		
+	}
+	
+	/**
+	 * Finite difference stencil of the unit mesh, shared by all the columns of the unit.
+	 */
+	public ColumnStencil getUnitStencil(int columnUnit, int numNodes) {
+		
+		if (!unitStencils.containsKey(columnUnit)) unitStencils.put(columnUnit, new ColumnStencil(getUnitNodeZ(columnUnit, numNodes)));
+		
+		return unitStencils.get(columnUnit);
+		
+	}
+	
 	public double getUnitDepth(int columnUnit) {
 		
 		return BasinUnitTypes.get(columnUnit).SoilDepth;
@@ -167,6 +269,15 @@ public class UnitsCatalog {
 		
 	}
 
+	static public String getSoilNameByZ(int columnUnit, double Z) {
+
+		//Log
+		logger.trace("Call to getSoilNameByZ(" + columnUnit + "," + Z + ").");
+		
+		return BasinUnitTypes.get(columnUnit).getSoilTypeByZ(Z);
+		
+	}
+
 	public String getInputFileName() {
 
 		//Log
@@ -21,6 +21,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.math.array.DoubleArray;
@@ -30,9 +37,52 @@ public class VerticalInfiltration {
 	//Pointer to the basin object
 	private Basin ProjectBasin;
 	
+	//Pointer to the numerical parameters
+	private NumericalModelParameters ProjectNumerics;
+	
 	//Richards 1D solver
 	private Richards1D richardsSolver;
 	
+	//Parallel execution, every worker thread owns its solver workspace (null if columns are solved serially)
+	private ForkJoinPool columnPool;
+	private ThreadLocal<Richards1D> workerSolver;
+	
+	//Cost-aware scheduling: iterations of every work unit in the last step, and the units sorted by cost (cost << 32 | unit)
+	private boolean costScheduling;
+	private long[] unitCost;
+	private long[] unitOrder;
+	private AtomicInteger nextUnit = new AtomicInteger();
+	
+	//Quiescent columns (no rain, no ponding, water content change below tolerance) are not solved until they wake up
+	private boolean quiescentColumns;
+	
+	//Hydrology groups: cell solved for every raster cell (itself if the cell is solved), and the cells which share a profile
+	private int[] hydrologyRepresentative;
+	private int[] hydrologyMembers;
+	
+	//Predictor of the initial guess shared by all the solvers (null for the linear extrapolation)
+	private SuctionPredictor columnPredictor;
+	
+	//Batches of columns solved in lock-step (null if the batched solver is not used)
+	private Richards1DBatch[] columnBatches;
+	
+	//Adaptive time step controller (null if the global time step is used)
+	private TimeStepController stepController;
+	
+	//Dynamic mesh refinement of the columns (null if the meshes are fixed)
+	private MeshAdaptation columnMesh;
+	
+	//Failure policy of the column steps, a workspace per solver (null if failed steps are kept), all the workspaces for the
+	//counters and the degraded cells already reported
+	private ColumnFailurePolicy failurePolicy;
+	private ThreadLocal<ColumnFailurePolicy> workerPolicy;
+	private ArrayList<ColumnFailurePolicy> failurePolicies = new ArrayList<ColumnFailurePolicy>();
+	private boolean[] degradedReported;
+	
+	//Basin time of the current step and next synchronisation time (output or rainfall change)
+	private double BasinTime;
+	private double SyncTime;
+	
     //Logger
     private static Logger logger;
     
@@ -56,40 +106,665 @@ public class VerticalInfiltration {
 		//Log
 		logger.info("Call to TimeStep(" + dt + ").");
 
+		//Work units: batches or raster cells
+		int units;
+		if(columnBatches != null) {
+			units = columnBatches.length;
+		} else {
+			units = ProjectBasin.FillTopoRaster.getNX() * ProjectBasin.FillTopoRaster.getNY();
+		}
+		
+		//Members with a different forcing leave their group
+		if(hydrologyRepresentative != null) CheckHydrologyForcing();
+		
+		if(columnPool != null && costScheduling) {
+			
+			//Queue of work units, the most expensive of the last step first
+			SortUnitsByCost(units);
+			nextUnit.set(0);
+			columnPool.invoke(new UnitQueueTask(true, units, dt, dtMin, TolTh, TolH, MaxIt));
+			
+		} else if(columnPool != null) {
+			
+			//Fork-join over tiles of work units
+			int tileSize = Math.max(1, units / (8 * columnPool.getParallelism()));
+			columnPool.invoke(new ColumnTilesTask(0, units, tileSize, dt, dtMin, TolTh, TolH, MaxIt));
+			
+		} else {
+			SolveUnits(richardsSolver, 0, units, dt, dtMin, TolTh, TolH, MaxIt);
+		}
+		
+		//Shared profiles
+		if(hydrologyRepresentative != null) UpdateHydrologyMembers();
+		
+	}
+	
+	/**
+	 * Group the cells with the same unit and initial profile, only the first cell of every group is solved. The rainfall
+	 * is a single basin series, so every cell has the same forcing signature and it is not part of the key: a member
+	 * whose rainfall raster value differs from the one of its group in a step is detached by CheckHydrologyForcing, and
+	 * is not grouped again since its profile no longer matches.
+	 */
+	private void CreateHydrologyGroups() {
+		
+		//Log
+		logger.info("Call to CreateHydrologyGroups().");
 		
-		//Loop over all the raster layer cells
 		int iNX = ProjectBasin.FillTopoRaster.getNX();
-        int iNY = ProjectBasin.FillTopoRaster.getNY();
-
-        for (int y = 0; y < iNY; y++) {
-            for (int x = 0; x < iNX; x++) {
-            	
-        		//Local time step
-        		double dtLocal = 0.0;
-            	
-        		//The infiltration algorithm reduces time step, so a internal control and iteration is necessary
-        		// to guarantee cells synchronization
-        		while(dtLocal < dt) {
-                	dtLocal = dtLocal + ComputeInfiltration(x, y, (dt - dtLocal), dtMin, TolTh, TolH, MaxIt);  
-                	
-                	//Advance values for the next step (linear extrapolation
-                	VariablesExtrapolation(x, y, dt, (dt - dtLocal));
-        		}
-            }
-        }
+		int iNY = ProjectBasin.FillTopoRaster.getNY();
+		
+		hydrologyRepresentative = new int[iNX * iNY];
+		HashMap<HydrologyKey, Integer> groups = new HashMap<HydrologyKey, Integer>();
+		ArrayList<Integer> members = new ArrayList<Integer>();
+		
+		for (int cell = 0; cell < iNX * iNY; cell++) {
+			
+			SoilColumn column = ProjectBasin.BasinSoilColumns[cell % iNX][cell / iNX];
+			hydrologyRepresentative[cell] = cell;
+			if(column == null) continue;
+			
+			//Signature of the hydrology: unit and initial profile
+			HydrologyKey key = new HydrologyKey(column.ColumnStaticProperties.getColumnUnit(), column.ColumnDynamicVariables.SuctionOld,
+					column.ColumnDynamicVariables.ThetaOld);
+			
+			Integer first = groups.get(key);
+			if(first == null) {
+				groups.put(key, cell);
+			} else {
+				hydrologyRepresentative[cell] = first;
+				column.ColumnDynamicVariables.ShareHydrology(ProjectBasin.BasinSoilColumns[first % iNX][first / iNX].ColumnDynamicVariables);
+				members.add(cell);
+			}
+		}
+		
+		hydrologyMembers = new int[members.size()];
+		for (int m = 0; m < hydrologyMembers.length; m++) hydrologyMembers[m] = members.get(m);
+		
+		//Log
+		logger.info("Hydrology groups: " + groups.size() + " solved columns for " + (groups.size() + members.size()) + " cells.");
+		
+	}
+	
+	/**
+	 * Key of a hydrology group, the unit and the initial suction and water content profiles of the column (the arrays
+	 * are not copied, the key only lives while the groups are built).
+	 */
+	private static class HydrologyKey {
+		
+		private int unit;
+		private double[] suction;
+		private double[] theta;
+		private int hash;
+		
+		HydrologyKey(int unit, double[] suction, double[] theta) {
+			this.unit = unit;
+			this.suction = suction;
+			this.theta = theta;
+			hash = 31 * (31 * unit + Arrays.hashCode(suction)) + Arrays.hashCode(theta);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof HydrologyKey)) return false;
+			HydrologyKey key = (HydrologyKey) other;
+			return unit == key.unit && hash == key.hash && Arrays.equals(suction, key.suction) && Arrays.equals(theta, key.theta);
+		}
+	}
+	
+	/**
+	 * A member whose rainfall differs from the one of its group gets its own copy of the profile and is solved by itself.
+	 */
+	private void CheckHydrologyForcing() {
+		
+		int iNX = ProjectBasin.FillTopoRaster.getNX();
+		
+		for (int m = 0; m < hydrologyMembers.length; m++) {
+			
+			int cell = hydrologyMembers[m];
+			int first = hydrologyRepresentative[cell];
+			if(first == cell) continue;
+			
+			if(ProjectBasin.RainIntensityRaster.getCellValueAsDouble(cell % iNX, cell / iNX) != ProjectBasin.RainIntensityRaster.getCellValueAsDouble(first % iNX, first / iNX)) {
+				ProjectBasin.BasinSoilColumns[cell % iNX][cell / iNX].ColumnDynamicVariables.DetachHydrology();
+				hydrologyRepresentative[cell] = cell;
+			}
+		}
+		
+	}
+	
+	/**
+	 * Boundary state and cell rasters of the group members from the solved column.
+	 */
+	private void UpdateHydrologyMembers() {
 		
+		int iNX = ProjectBasin.FillTopoRaster.getNX();
+		
+		for (int m = 0; m < hydrologyMembers.length; m++) {
+			
+			int cell = hydrologyMembers[m];
+			int first = hydrologyRepresentative[cell];
+			if(first == cell) continue;
+			
+			int x = cell % iNX;
+			int y = cell / iNX;
+			ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables.CopyHydrologyState(ProjectBasin.BasinSoilColumns[first % iNX][first / iNX].ColumnDynamicVariables);
+			ProjectBasin.DepthRaster.setCellValue(x, y, ProjectBasin.DepthRaster.getCellValueAsDouble(first % iNX, first / iNX));
+			ProjectBasin.Watertable.setCellValue(x, y, ProjectBasin.Watertable.getCellValueAsDouble(first % iNX, first / iNX));
+			if(failurePolicy != null) ProjectBasin.DegradedRaster.setCellValue(x, y, ProjectBasin.DegradedRaster.getCellValueAsDouble(first % iNX, first / iNX));
+		}
 		
 	}
 	
-	private double ComputeInfiltration(int i, int j, double dt, double dtMin, double TolTh, double TolH, int MaxIt) {
+	/**
+	 * Solve work units first to last - 1 (batches, or raster cells in row order) with the given solver workspace.
+	 */
+	private void SolveUnits(Richards1D solver, int first, int last, double dt, double dtMin, double TolTh, double TolH, int MaxIt) {
+		
+		for (int unit = first; unit < last; unit++) {
+			SolveUnit(solver, unit, dt, dtMin, TolTh, TolH, MaxIt);
+		}
+		
+	}
+	
+	/**
+	 * Solve one work unit and record its cost (iterations of the solvers).
+	 */
+	private void SolveUnit(Richards1D solver, int unit, double dt, double dtMin, double TolTh, double TolH, int MaxIt) {
+		
+		long iterations = solver.IterationCount;
+		long batchIterations = 0;
+		
+		//Batched solver, the columns which do not converge are solved one by one
+		if(columnBatches != null) {
+			
+			batchIterations = columnBatches[unit].IterationCount;
+			BatchTimeStep(solver, columnBatches[unit], dt, dtMin, TolTh, TolH, MaxIt);
+			batchIterations = columnBatches[unit].IterationCount - batchIterations;
+			
+		//Raster cell
+		} else {
+			
+			int iNX = ProjectBasin.FillTopoRaster.getNX();
+			int x = unit % iNX;
+			int y = unit / iNX;
+			
+			//Member of a hydrology group, its profile is solved with the group
+			if(hydrologyRepresentative != null && hydrologyRepresentative[unit] != unit) {
+				unitCost[unit] = 0;
+				return;
+			}
+			
+			//Sleeping column
+			if(quiescentColumns && ColumnSleeps(solver, x, y, dt, dtMin, TolTh, TolH, MaxIt)) {
+				unitCost[unit] = 0;
+				return;
+			}
+			
+			ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables.Activity = 0.0;
+			
+			if(stepController != null) {
+				AdaptiveColumnTimeStep(solver, x, y, dt, TolTh, TolH, MaxIt);
+			} else {
+				ColumnTimeStep(solver, x, y, dt, dtMin, TolTh, TolH, MaxIt);
+			}
+			
+			if(quiescentColumns) CheckQuiescentColumn(x, y);
+			
+			//Mesh for the next step
+			if(columnMesh != null) columnMesh.Adapt(ProjectBasin.BasinSoilColumns[x][y].ColumnStaticProperties, ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables);
+		}
+		
+		unitCost[unit] = solver.IterationCount - iterations + batchIterations;
+		
+	}
+	
+	/**
+	 * Keep a sleeping column asleep while it has no rain and no ponding, up to MaxSleepTime and never past an output or
+	 * rainfall change. When it wakes up, the time slept is solved first with the dry forcing of the sleep, so the column
+	 * is back on the basin clock.
+	 */
+	private boolean ColumnSleeps(Richards1D solver, int x, int y, double dt, double dtMin, double TolTh, double TolH, int MaxIt) {
+		
+		SoilColumnDynamicVariables Dynamic = ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables;
+		
+		if(!Dynamic.Asleep) return false;
+		
+		boolean forcing = ProjectBasin.RainIntensityRaster.getCellValueAsDouble(x, y) != 0.0 || ProjectBasin.DepthRaster.getCellValueAsDouble(x, y) > 0.0;
+		boolean synchronisation = BasinTime + dt >= SyncTime * (1.0 - 1.0E-12);
+		
+		if(!forcing && !synchronisation && Dynamic.SleepTime + dt <= ProjectNumerics.MaxSleepTime) {
+			Dynamic.SleepTime = Dynamic.SleepTime + dt;
+			return true;
+		}
 		
 		//Log
-		logger.trace("Call to ComputeInfiltration(" + i + "," + j + "," + dt + ").");
+		if(logger.isTraceEnabled()) logger.trace("Column (" + x + "," + y + ") wakes up after " + Dynamic.SleepTime + " s.");
+		
+		//Wake up, catch up with the time slept
+		double sleepTime = Dynamic.SleepTime;
+		double dtLocal = 0.0;
+		
+		while(dtLocal < sleepTime) {
+			dtLocal = dtLocal + ComputeInfiltration(solver, x, y, (sleepTime - dtLocal), dtMin, TolTh, TolH, MaxIt, 0.0, 0.0);
+			VariablesExtrapolation(solver, x, y, sleepTime, (sleepTime - dtLocal));
+		}
+		
+		Dynamic.Asleep = false;
+		Dynamic.SleepTime = 0.0;
+		
+		return false;
+		
+	}
+	
+	/**
+	 * Put the column to sleep after a basin step without rain and ponding and with a water content change below tolerance.
+	 */
+	private void CheckQuiescentColumn(int x, int y) {
+		
+		SoilColumnDynamicVariables Dynamic = ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables;
+		
+		if(Dynamic.Activity < ProjectNumerics.QuiescentTolerance && Dynamic.TimeAhead == 0.0 && Dynamic.topBoundCondInfiltration &&
+				ProjectBasin.RainIntensityRaster.getCellValueAsDouble(x, y) == 0.0 && ProjectBasin.DepthRaster.getCellValueAsDouble(x, y) <= 0.0) {
+			Dynamic.Asleep = true;
+			Dynamic.SleepTime = 0.0;
+		}
+		
+	}
+	
+	/**
+	 * Longest processing time order: units sorted by the cost of the last step, the queue is read from the end.
+	 */
+	private void SortUnitsByCost(int units) {
+		
+		for (int unit = 0; unit < units; unit++) {
+			unitOrder[unit] = (Math.min(unitCost[unit], Integer.MAX_VALUE) << 32) | unit;
+		}
+		Arrays.sort(unitOrder);
+		
+	}
+	
+	/**
+	 * Worker of the cost-aware scheduler, takes units from the shared queue until it is empty. The root task forks
+	 * one worker per thread and works itself.
+	 */
+	private class UnitQueueTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private boolean root;
+		private int units;
+		private double dt;
+		private double dtMin;
+		private double TolTh;
+		private double TolH;
+		private int MaxIt;
+		
+		UnitQueueTask(boolean root, int units, double dt, double dtMin, double TolTh, double TolH, int MaxIt) {
+			this.root = root;
+			this.units = units;
+			this.dt = dt;
+			this.dtMin = dtMin;
+			this.TolTh = TolTh;
+			this.TolH = TolH;
+			this.MaxIt = MaxIt;
+		}
+		
+		@Override
+		protected void compute() {
+			
+			//Other workers
+			UnitQueueTask[] workers = null;
+			if(root) {
+				workers = new UnitQueueTask[columnPool.getParallelism() - 1];
+				for (int w = 0; w < workers.length; w++) {
+					workers[w] = new UnitQueueTask(false, units, dt, dtMin, TolTh, TolH, MaxIt);
+					workers[w].fork();
+				}
+			}
+			
+			//Most expensive remaining unit
+			Richards1D solver = workerSolver.get();
+			int k;
+			while((k = nextUnit.getAndIncrement()) < units) {
+				int unit = (int) (unitOrder[units - 1 - k] & 0xFFFFFFFFL);
+				SolveUnit(solver, unit, dt, dtMin, TolTh, TolH, MaxIt);
+			}
+			
+			if(root) {
+				for (int w = 0; w < workers.length; w++) {
+					workers[w].join();
+				}
+			}
+			
+		}
+	}
+	
+	/**
+	 * Fork-join task over a range of work units, split in halves down to the tile size. Every column is solved by one worker,
+	 * so the cell writes of DepthRaster and Watertable never overlap.
+	 */
+	private class ColumnTilesTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private int first;
+		private int last;
+		private int tileSize;
+		private double dt;
+		private double dtMin;
+		private double TolTh;
+		private double TolH;
+		private int MaxIt;
+		
+		ColumnTilesTask(int first, int last, int tileSize, double dt, double dtMin, double TolTh, double TolH, int MaxIt) {
+			this.first = first;
+			this.last = last;
+			this.tileSize = tileSize;
+			this.dt = dt;
+			this.dtMin = dtMin;
+			this.TolTh = TolTh;
+			this.TolH = TolH;
+			this.MaxIt = MaxIt;
+		}
+		
+		@Override
+		protected void compute() {
+			
+			//Tile solved by this worker
+			if(last - first <= tileSize) {
+				SolveUnits(workerSolver.get(), first, last, dt, dtMin, TolTh, TolH, MaxIt);
+				return;
+			}
+			
+			int middle = (first + last) >>> 1;
+			invokeAll(new ColumnTilesTask(first, middle, tileSize, dt, dtMin, TolTh, TolH, MaxIt),
+					new ColumnTilesTask(middle, last, tileSize, dt, dtMin, TolTh, TolH, MaxIt));
+			
+		}
+	}
+	
+	private void ColumnTimeStep(Richards1D solver, int x, int y, double dt, double dtMin, double TolTh, double TolH, int MaxIt) {
+		
+		//Local time step
+		double dtLocal = 0.0;
+		int substeps = 0;
+    	
+		//The infiltration algorithm reduces time step, so a internal control and iteration is necessary
+		// to guarantee cells synchronization
+		while(dtLocal < dt) {
+			if(SubstepsSpent(substeps++)) {
+				dtLocal = dtLocal + HoldColumn(solver, x, y, (dt - dtLocal));
+			} else {
+				dtLocal = dtLocal + ComputeInfiltration(solver, x, y, (dt - dtLocal), dtMin, TolTh, TolH, MaxIt);
+			}
+        	
+        	//Advance values for the next step (linear extrapolation
+        	VariablesExtrapolation(solver, x, y, dt, (dt - dtLocal));
+		}
+		
+	}
+	
+	private void AdaptiveColumnTimeStep(Richards1D solver, int x, int y, double dt, double TolTh, double TolH, int MaxIt) {
+		
+		SoilColumnDynamicVariables Dynamic = ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables;
+		
+		//Column already ahead of the basin clock
+		if(Dynamic.TimeAhead >= dt * (1.0 - 1.0E-9)) {
+			Dynamic.TimeAhead = Math.max(Dynamic.TimeAhead - dt, 0.0);
+			return;
+		}
+		
+		double dtTarget = dt - Dynamic.TimeAhead;
+		Dynamic.TimeAhead = 0.0;
+		
+		//Dry redistribution (no rain, no ponding), the column may step beyond the basin time up to the next synchronisation time
+		double dtLimit = dtTarget;
+		if(ProjectBasin.RainIntensityRaster.getCellValueAsDouble(x, y) == 0.0 && ProjectBasin.DepthRaster.getCellValueAsDouble(x, y) <= 0.0 &&
+				Dynamic.topBoundCondInfiltration) {
+			dtLimit = Math.max(dtTarget, SyncTime - (BasinTime + dt - dtTarget));
+		}
+		
+		//Local time step
+		double dtLocal = 0.0;
+		int substeps = 0;
+		
+		while(dtLocal < dtTarget * (1.0 - 1.0E-9)) {
+			
+			double dtProposed = stepController.ProposedStep(dt, Dynamic);
+			double dtLeft = dtLimit - dtLocal;
+			
+			//Do not leave a short step before the limit
+			double dtTry = dtProposed;
+			if(dtTry > dtLeft / 1.25) dtTry = dtLeft;
+			
+			double dtDone;
+			if(SubstepsSpent(substeps++)) {
+				dtDone = HoldColumn(solver, x, y, dtTarget - dtLocal);
+			} else {
+				dtDone = ComputeInfiltration(solver, x, y, dtTry, stepController.dtMin, TolTh, TolH, MaxIt);
+			}
+			dtLocal = dtLocal + dtDone;
+			
+			//Next step of the column
+			stepController.Update(dtDone, dtDone < dtTry, dtTry < dtProposed, solver.LastIterations, Dynamic);
+			
+			//Advance values for the next step (linear extrapolation)
+			VariablesExtrapolation(solver, x, y, dtDone, stepController.ProposedStep(dt, Dynamic));
+		}
+		
+		if(dtLocal > dtTarget) Dynamic.TimeAhead = dtLocal - dtTarget;
+		
+	}
+	
+	private void BatchTimeStep(Richards1D solver, Richards1DBatch batch, double dt, double dtMin, double TolTh, double TolH, int MaxIt) {
+		
+		//Log
+		if(logger.isTraceEnabled()) logger.trace("Call to BatchTimeStep(" + batch + "," + dt + ").");
+		
+		//Forcing of the batch columns
+		for (int c = 0; c < batch.size; c++) {
+			batch.waterDepth[c] = ProjectBasin.DepthRaster.getCellValueAsDouble(batch.cellX[c], batch.cellY[c]);
+			batch.precipitation[c] = ProjectBasin.RainIntensityRaster.getCellValueAsDouble(batch.cellX[c], batch.cellY[c]);
+		}
+		
+		//Whole time step for all the columns in lock-step
+		boolean[] converged = batch.timeStep(TolTh, TolH, MaxIt, dt, batch.waterDepth, batch.precipitation, ProjectBottomBoundaryCondition);
+		
+		for (int c = 0; c < batch.size; c++) {
+			if(converged[c]) {
+				UpdateCellRasters(batch.cellX[c], batch.cellY[c]);
+				VariablesExtrapolation(solver, batch.cellX[c], batch.cellY[c], dt, 0.0);
+			} else {
+				ColumnTimeStep(solver, batch.cellX[c], batch.cellY[c], dt, dtMin, TolTh, TolH, MaxIt);
+			}
+		}
+		
+	}
+	
+	private double ComputeInfiltration(Richards1D solver, int i, int j, double dt, double dtMin, double TolTh, double TolH, int MaxIt) {
+		
+		return ComputeInfiltration(solver, i, j, dt, dtMin, TolTh, TolH, MaxIt, ProjectBasin.DepthRaster.getCellValueAsDouble(i, j),
+				ProjectBasin.RainIntensityRaster.getCellValueAsDouble(i, j));
+		
+	}
+	
+	private double ComputeInfiltration(Richards1D solver, int i, int j, double dt, double dtMin, double TolTh, double TolH, int MaxIt,
+			double waterDepth, double precipitation) {
+		
+		//Log
+		if(logger.isTraceEnabled()) logger.trace("Call to ComputeInfiltration(" + i + "," + j + "," + dt + ").");
 		
 		//Call the solver passing the columns parameters
-		double dtLocal = richardsSolver.timeStep(TolTh, TolH, MaxIt, dt, dtMin, ProjectBasin.BasinSoilColumns[i][j].ColumnStaticProperties,
-				ProjectBasin.BasinSoilColumns[i][j].ColumnDynamicVariables, ProjectBasin.DepthRaster.getCellValueAsDouble(i, j),
-				ProjectBasin.RainIntensityRaster.getCellValueAsDouble(i, j),ProjectBottomBoundaryCondition);
+		SoilColumnDynamicVariables Dynamic = ProjectBasin.BasinSoilColumns[i][j].ColumnDynamicVariables;
+		double dtLocal;
+		if(failurePolicy != null) {
+			dtLocal = Policy(solver).TimeStep(solver, TolTh, TolH, MaxIt, dt, dtMin, ProjectBasin.BasinSoilColumns[i][j].ColumnStaticProperties,
+					Dynamic, waterDepth, precipitation, ProjectBottomBoundaryCondition);
+			if(Dynamic.Degraded) ProjectBasin.DegradedRaster.setCellValue(i, j, 1.0);
+		} else {
+			dtLocal = solver.timeStep(TolTh, TolH, MaxIt, dt, dtMin, ProjectBasin.BasinSoilColumns[i][j].ColumnStaticProperties,
+					Dynamic, waterDepth, precipitation, ProjectBottomBoundaryCondition);
+		}
+		
+		//Activity of the column
+		if(quiescentColumns) {
+			double deltaTheta = 0.0;
+			for(int k = 0; k < Dynamic.ThetaNew.length; k++) {
+				deltaTheta = Math.max(deltaTheta, Math.abs(Dynamic.ThetaNew[k] - Dynamic.ThetaOld[k]));
+			}
+			Dynamic.Activity = Dynamic.Activity + deltaTheta;
+		}
+
+		//Update cell rasters
+		UpdateCellRasters(i, j);
+		
+		return dtLocal;
+		
+	}
+	
+	/**
+	 * Failure policy of the solver workspace (the workers own one each).
+	 */
+	private ColumnFailurePolicy Policy(Richards1D solver) {
+		
+		return (solver == richardsSolver) ? failurePolicy : workerPolicy.get();
+		
+	}
+	
+	/**
+	 * The column has used its sub-steps of the basin time step.
+	 */
+	private boolean SubstepsSpent(int substeps) {
+		
+		return failurePolicy != null && failurePolicy.MaxSubsteps > 0 && substeps >= failurePolicy.MaxSubsteps;
+		
+	}
+	
+	/**
+	 * Hold the state of a column over the rest of the basin time step and mark it as degraded.
+	 */
+	private double HoldColumn(Richards1D solver, int i, int j, double dt) {
+		
+		Policy(solver).Hold(dt, ProjectBasin.RainIntensityRaster.getCellValueAsDouble(i, j), ProjectBasin.BasinSoilColumns[i][j].ColumnStaticProperties,
+				ProjectBasin.BasinSoilColumns[i][j].ColumnDynamicVariables);
+		ProjectBasin.DegradedRaster.setCellValue(i, j, 1.0);
+		UpdateCellRasters(i, j);
+		
+		return dt;
+		
+	}
+	
+	/**
+	 * Solver workspace with the options of the basin solver.
+	 */
+	public Richards1D CreateSolver() {
+		
+		Richards1D solver = new Richards1D(ProjectBasin.numNodes, ProjectNumerics.maxPonding);
+		solver.setNonlinearSolver(ProjectNumerics.NonlinearSolver);
+		solver.setPredictor(columnPredictor);
+		solver.setIterationPolicy(ProjectNumerics.IterationPolicy);
+		solver.setDiscretisation(ProjectNumerics.Discretisation);
+		solver.setMassBalance(ProjectNumerics.MassBalanceMonitor, ProjectNumerics.MassBalanceTolerance);
+		solver.setTransformedVariable(ProjectNumerics.TransformedVariable);
+		solver.setTimeIntegration(ProjectNumerics.TimeIntegration);
+		solver.setRegimeFastPaths(ProjectNumerics.RegimeFastPaths);
+		solver.setFusedKernel(ProjectNumerics.FusedKernel);
+		solver.setPartitionedSolver(ProjectNumerics.PartitionedSolverNodes, columnPool);
+		
+		return solver;
+		
+	}
+	
+	/**
+	 * Advance a state of column (x, y) from t0 to t1 without the basin rasters (time-parallel driver). The fine propagation
+	 * takes the basin time steps and repeats ColumnTimeStep, the coarse one splits the interval in coarseSteps steps (not
+	 * shorter than the basin time step, cut at the rainfall changes) with the tolerances multiplied by looseFactor. Returns
+	 * the ponding depth at t1.
+	 */
+	public double PropagateColumn(Richards1D solver, int x, int y, SoilColumnDynamicVariables Dynamic, double waterDepth, double t0, double t1,
+			boolean coarse, int coarseSteps, double looseFactor, Climate BasinClimate) {
+		
+		SoilColumnStaticProperties Static = ProjectBasin.BasinSoilColumns[x][y].ColumnStaticProperties;
+		int top = Static.nodeZ.length - 1;
+		
+		double TolTh = ProjectNumerics.TolTh;
+		double TolH = ProjectNumerics.TolH;
+		if(coarse) {
+			TolTh = TolTh * looseFactor;
+			TolH = TolH * looseFactor;
+		}
+		
+		double t = t0;
+		double coarseStep = Math.max(ProjectNumerics.dt, (t1 - t0) / coarseSteps);
+		
+		while(t < t1) {
+			
+			//Time step, the basin clock of the main loop for the fine propagation
+			double dt;
+			double tNext;
+			if(coarse) {
+				tNext = Math.min(Math.min(t1, t + coarseStep), BasinClimate.getNextRainfallChange(t));
+				dt = tNext - t;
+			} else {
+				dt = ProjectNumerics.CheckTimeStep(t);
+				tNext = t + dt;
+			}
+			
+			double precipitation = BasinClimate.getRainfall(t);
+			double dtLocal = 0.0;
+			
+			while(dtLocal < dt) {
+				dtLocal = dtLocal + solver.timeStep(TolTh, TolH, ProjectNumerics.MaxIt, (dt - dtLocal), ProjectNumerics.dtMin,
+						Static, Dynamic, waterDepth, precipitation, ProjectBottomBoundaryCondition);
+				waterDepth = Math.max(Dynamic.SuctionNew[top], 0.0);
+				solver.timeForward((dt - dtLocal), dt, Static, Dynamic);
+			}
+			
+			t = tNext;
+			
+		}
+		
+		return waterDepth;
+		
+	}
+	
+	/**
+	 * State of column (x, y) and its cell rasters from a state of the time-parallel driver.
+	 */
+	public void LoadColumnState(int x, int y, SoilColumnDynamicVariables State, double waterDepth) {
+		
+		ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables.CopyState(State);
+		ProjectBasin.DepthRaster.setCellValue(x, y, waterDepth);
+		ProjectBasin.Watertable.setCellValue(x, y, ProjectBasin.BasinSoilColumns[x][y].ComputeWaterTable());
+		
+	}
+	
+	private ColumnFailurePolicy CreateFailurePolicy() {
+		
+		//Fallback solver, Euler steps of the same discretisation
+		Richards1D fallback = new Richards1D(ProjectBasin.numNodes, ProjectNumerics.maxPonding);
+		fallback.setNonlinearSolver(ProjectNumerics.FallbackSolver);
+		fallback.setPredictor(columnPredictor);
+		fallback.setDiscretisation(ProjectNumerics.Discretisation);
+		fallback.setFusedKernel(ProjectNumerics.FusedKernel);
+		fallback.setMassBalance(ProjectNumerics.MassBalanceMonitor, ProjectNumerics.MassBalanceTolerance);
+		fallback.setPartitionedSolver(ProjectNumerics.PartitionedSolverNodes, columnPool);
+		
+		ColumnFailurePolicy policy = new ColumnFailurePolicy(ProjectNumerics.FailureRetries, ProjectNumerics.MaxSubsteps, fallback, ProjectBasin.numNodes);
+		synchronized(failurePolicies) {
+			failurePolicies.add(policy);
+		}
+		
+		return policy;
+		
+	}
+	
+	private void UpdateCellRasters(int i, int j) {
 
 		//Update cell depth value, only if head is > 0 (ponding)
 		int TopNodeNum = ProjectBasin.BasinSoilColumns[i][j].ColumnStaticProperties.nodeZ.length;
@@ -98,19 +773,33 @@ public class VerticalInfiltration {
 		//Update water table values
 		ProjectBasin.Watertable.setCellValue(i, j, ProjectBasin.BasinSoilColumns[i][j].ComputeWaterTable());
 		
-		return dtLocal;
-		
 	}
 
 
-	public void InitializeAuxVariables(double maxPonding) {
+	public void InitializeAuxVariables(NumericalModelParameters AuxNumerics) {
 		
 		//Log
 		logger.info("Call to InitializeAuxVariables().");
 
-		//Create solver class
-		int nodesNumber = ProjectBasin.numNodes;
-		richardsSolver = new Richards1D(nodesNumber,maxPonding);
+		//Point to the numerical parameters
+		ProjectNumerics = AuxNumerics;
+
+		//Predictor of the initial guess
+		if(!ProjectNumerics.Predictor.equals("Linear")) columnPredictor = new SuctionPredictor(ProjectNumerics.Predictor);
+		
+		//Parallel columns, a solver workspace per worker thread
+		if(ProjectNumerics.Threads > 1) {
+			columnPool = new ForkJoinPool(ProjectNumerics.Threads);
+			workerSolver = new ThreadLocal<Richards1D>() {
+				@Override
+				protected Richards1D initialValue() {
+					return CreateSolver();
+				}
+			};
+		}
+		
+		//Create solver class, deep columns split across the same workers
+		richardsSolver = CreateSolver();
 		
 		//Loop over all the raster layer cells
 		
@@ -136,12 +825,172 @@ public class VerticalInfiltration {
             	//Update old dynamic arrays with the fitted values 
             	ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables.ReInitializeColumnVariables();
             	
+            	//History of the higher order predictors
+            	if(!ProjectNumerics.Predictor.equals("Linear")) ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables.CreatePredictorHistory();
+            	
+            	//History of the BDF2 formula and of the truncation error estimate
+            	if(ProjectNumerics.TimeIntegration.equals("BDF2") || ProjectNumerics.TruncationTolerance > 0.0) ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables.CreateMultistepHistory();
+            	
             }
         }
+        
+        //Failure policy, a fallback solver per solver workspace
+        if(ProjectNumerics.FailurePolicy) {
+        	failurePolicy = CreateFailurePolicy();
+        	if(columnPool != null) {
+        		workerPolicy = new ThreadLocal<ColumnFailurePolicy>() {
+        			@Override
+        			protected ColumnFailurePolicy initialValue() {
+        				return CreateFailurePolicy();
+        			}
+        		};
+        	}
+        }
+        
+        //Adaptive time step, every column with its own step
+        if(ProjectNumerics.AdaptiveTimeStep) {
+        	stepController = new TimeStepController(ProjectNumerics.dtMin, ProjectNumerics.dtMax, ProjectNumerics.MaxIt);
+        	stepController.TruncationTarget = ProjectNumerics.TruncationTolerance;
+        }
+        
+        //Dynamic column meshes, up to the nodes of the solver workspace
+        if(ProjectNumerics.MeshAdaptation) {
+        	columnMesh = new MeshAdaptation(ProjectNumerics.RefinementTheta, ProjectNumerics.RefinementSuction, ProjectNumerics.MinElementSize,
+        			ProjectNumerics.MaxElementSize, ProjectBasin.numNodes, ProjectBasin.BasinSoilsCatalog);
+        }
+        
+        //Cells sharing the hydrology (fixed meshes only)
+        if(ProjectNumerics.HydrologyGroups && columnMesh == null) {
+        	CreateHydrologyGroups();
+        }
+        
+        //Batches of columns for the lock-step solver (Picard, capacity form, suction unknowns, Euler global time step, fixed meshes and no fast paths only)
+        if(ProjectNumerics.BatchColumns > 0 && ProjectNumerics.NonlinearSolver.equals("Picard") && ProjectNumerics.Discretisation.equals("Capacity") &&
+        		!ProjectNumerics.TransformedVariable && !ProjectNumerics.AdaptiveTimeStep && columnMesh == null && ProjectNumerics.TimeIntegration.equals("Euler") &&
+        		!ProjectNumerics.RegimeFastPaths) {
+        	CreateColumnBatches(ProjectNumerics.BatchColumns);
+        }
+        
+        //Costs of the work units (batches or raster cells)
+        int units = ProjectBasin.FillTopoRaster.getNX() * ProjectBasin.FillTopoRaster.getNY();
+        if(columnBatches != null) units = columnBatches.length;
+        unitCost = new long[units];
+        unitOrder = new long[units];
+        costScheduling = columnPool != null && ProjectNumerics.ColumnScheduling.equals("Cost");
+        
+        //Sleeping of quiescent columns (not with batches)
+        quiescentColumns = ProjectNumerics.QuiescentTolerance > 0.0 && columnBatches == null;
 				
 	}
 	
 	
+	private void CreateColumnBatches(int batchColumns) {
+		
+		//Log
+		logger.info("Call to CreateColumnBatches(" + batchColumns + ").");
+		
+        int iNX = ProjectBasin.FillTopoRaster.getNX();
+        int iNY = ProjectBasin.FillTopoRaster.getNY();
+        
+        //Columns grouped by number of nodes, the batch arrays are node-major
+        TreeMap<Integer, ArrayList<int[]>> cellsByNodes = new TreeMap<Integer, ArrayList<int[]>>();
+        
+        for (int y = 0; y < iNY; y++) {
+            for (int x = 0; x < iNX; x++) {
+            	if(ProjectBasin.BasinSoilColumns[x][y] == null) continue;
+            	if(hydrologyRepresentative != null && hydrologyRepresentative[y * iNX + x] != y * iNX + x) continue;
+            	
+            	int nodes = ProjectBasin.BasinSoilColumns[x][y].ColumnStaticProperties.nodeZ.length;
+            	if(!cellsByNodes.containsKey(nodes)) cellsByNodes.put(nodes, new ArrayList<int[]>());
+            	cellsByNodes.get(nodes).add(new int[] {x, y});
+            }
+        }
+        
+        //Split every group in batches of batchColumns columns
+        ArrayList<Richards1DBatch> batches = new ArrayList<Richards1DBatch>();
+        
+        for (ArrayList<int[]> cells : cellsByNodes.values()) {
+        	for (int first = 0; first < cells.size(); first = first + batchColumns) {
+        		
+        		int size = Math.min(batchColumns, cells.size() - first);
+        		SoilColumn[] batchColumnsArray = new SoilColumn[size];
+        		int[] batchX = new int[size];
+        		int[] batchY = new int[size];
+        		
+        		for (int c = 0; c < size; c++) {
+        			batchX[c] = cells.get(first + c)[0];
+        			batchY[c] = cells.get(first + c)[1];
+        			batchColumnsArray[c] = ProjectBasin.BasinSoilColumns[batchX[c]][batchY[c]];
+        		}
+        		
+        		batches.add(new Richards1DBatch(batchColumnsArray, batchX, batchY, ProjectNumerics.maxPonding));
+        	}
+        }
+        
+        columnBatches = batches.toArray(new Richards1DBatch[batches.size()]);
+		
+	}
+	
+	
+	/**
+	 * Largest accumulated mass balance closure error of the columns (m), metric of the mass balance monitor.
+	 */
+	public double getBalanceError() {
+		
+		double error = 0.0;
+		
+		for (int x = 0; x < ProjectBasin.BasinSoilColumns.length; x++) {
+			for (int y = 0; y < ProjectBasin.BasinSoilColumns[x].length; y++) {
+				if(ProjectBasin.BasinSoilColumns[x][y] == null) continue;
+				error = Math.max(error, ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables.CumulativeBalanceError);
+			}
+		}
+		
+		return error;
+		
+	}
+	
+	/**
+	 * Log of the failure policy: degraded columns, retries, held steps and rainfall dropped by the held steps (summed over
+	 * the columns), and the cells degraded since the last report.
+	 */
+	public void ReportFailures() {
+		
+		int iNX = ProjectBasin.FillTopoRaster.getNX();
+		int iNY = ProjectBasin.FillTopoRaster.getNY();
+		if(degradedReported == null) degradedReported = new boolean[iNX * iNY];
+		
+		long retries = 0;
+		long failures = 0;
+		synchronized(failurePolicies) {
+			for(ColumnFailurePolicy policy : failurePolicies) {
+				retries = retries + policy.Retries;
+				failures = failures + policy.Failures;
+			}
+		}
+		
+		int degraded = 0;
+		double discarded = 0.0;
+		StringBuilder cells = new StringBuilder();
+		
+		for (int y = 0; y < iNY; y++) {
+			for (int x = 0; x < iNX; x++) {
+				if(ProjectBasin.BasinSoilColumns[x][y] == null) continue;
+				discarded = discarded + ProjectBasin.BasinSoilColumns[x][y].ColumnDynamicVariables.DiscardedForcing;
+				if(ProjectBasin.DegradedRaster.getCellValueAsDouble(x, y) != 1.0) continue;
+				degraded++;
+				if(!degradedReported[y * iNX + x]) {
+					degradedReported[y * iNX + x] = true;
+					cells.append(" (" + x + "," + y + ")");
+				}
+			}
+		}
+		
+		logger.info("Failure policy: degraded columns= " + degraded + ", retries= " + retries + ", held steps= " + failures + ", discarded rainfall= " + discarded + " m");
+		if(cells.length() > 0) logger.warn("Failure policy: columns degraded since the last output:" + cells);
+		
+	}
+	
 	public void updateRainfall(double t, Climate BasinClimate) {
 		
 		//Log
@@ -150,6 +999,10 @@ public class VerticalInfiltration {
 		//Get rainfall intensity value
 		double precipitationIntensity = BasinClimate.getRainfall(t);
 		
+		//Columns are synchronised at the next output time or rainfall change
+		BasinTime = t;
+		SyncTime = Math.min(BasinClimate.getNextRainfallChange(t), Math.min(ProjectNumerics.NextOutputTime(t), ProjectNumerics.Tfin));
+		
 		//Loop over all the raster layer cells
         int iNX = ProjectBasin.FillTopoRaster.getNX();
         int iNY = ProjectBasin.FillTopoRaster.getNY();
@@ -216,6 +1069,8 @@ public class VerticalInfiltration {
                 ProjectBottomBoundaryCondition.FluxBottom = Double.parseDouble(tokens[2]);
             }
             
+            //Bottom boundary condition model
+            ProjectBottomBoundaryCondition.CreateBottomBoundaryModel();
                     
         } catch (FileNotFoundException ex) {
             logger.error("Exception!",ex); //.printStackTrace();
@@ -235,13 +1090,13 @@ public class VerticalInfiltration {
 	}
 
 
-	private void VariablesExtrapolation(int i, int j, double dtOld, double dt) {
+	private void VariablesExtrapolation(Richards1D solver, int i, int j, double dtOld, double dt) {
 		
 		//Log
-		logger.trace("Call to VariablesExtrapolation(" + i + "," + j + "," + dt + ").");
+		if(logger.isTraceEnabled()) logger.trace("Call to VariablesExtrapolation(" + i + "," + j + "," + dt + ").");
 		
 		//Call the solver passing the columns parameters
-		richardsSolver.timeForward(dt, dtOld, ProjectBasin.BasinSoilColumns[i][j].ColumnStaticProperties,
+		solver.timeForward(dt, dtOld, ProjectBasin.BasinSoilColumns[i][j].ColumnStaticProperties,
 				ProjectBasin.BasinSoilColumns[i][j].ColumnDynamicVariables);
 
 		
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib.bottomBoundaryConditions;
+
+import org.apache.log4j.Logger;
+
+import RiDI_Column_Lib.BottomBoundaryCondition;
+import RiDI_Column_Lib.interfaces.InterfaceBottomBoundaryCondition;
+
+/**
+ * Prescribed pressure at the bottom node.
+ */
+public class BBC_Dirichlet implements InterfaceBottomBoundaryCondition {
+
+    //Logger
+    private static Logger logger;
+
+	//Bottom pressure
+	private double SuctionBottom;
+
+
+	public BBC_Dirichlet() {
+
+        //Create logger and log file
+        logger = Logger.getLogger("RiDI.bottomBoundaryConditions");
+
+	}
+
+
+	public void Initialize(BottomBoundaryCondition Parameters) {
+
+		//Log
+		logger.info("Call to BBC_Dirichlet.Initialize().");
+
+		SuctionBottom = Parameters.SuctionBottom;
+
+	}
+
+
+	public boolean FluxCondition(boolean current) {
+		return false;
+	}
+
+
+	public double Value(double current, double suctionBottom, double conductivityBottom) {
+		return SuctionBottom;
+	}
+
+
+	public double ValueDerivative(double suctionBottom, double conductivityDerivativeBottom) {
+		return 0.0;
+	}
+
+
+	public double ValueDerivativeUpper(double conductivityDerivativeUpper) {
+		return 0.0;
+	}
+
+
+	public boolean SeepageFace() {
+		return false;
+	}
+
+}
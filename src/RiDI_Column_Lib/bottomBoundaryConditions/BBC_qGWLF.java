@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib.bottomBoundaryConditions;
+
+import org.apache.log4j.Logger;
+
+import RiDI_Column_Lib.BottomBoundaryCondition;
+import RiDI_Column_Lib.interfaces.InterfaceBottomBoundaryCondition;
+
+/**
+ * Flow rate as a function of bottom pressure and a reference value GWL0L.
+ */
+public class BBC_qGWLF implements InterfaceBottomBoundaryCondition {
+
+    //Logger
+    private static Logger logger;
+
+	//Reference level and flux law parameters
+	private double GWL0L;
+	private double Aqh;
+	private double Bqh;
+
+
+	public BBC_qGWLF() {
+
+        //Create logger and log file
+        logger = Logger.getLogger("RiDI.bottomBoundaryConditions");
+
+	}
+
+
+	public void Initialize(BottomBoundaryCondition Parameters) {
+
+		//Log
+		logger.info("Call to BBC_qGWLF.Initialize().");
+
+		GWL0L = Parameters.GWL0L;
+		Aqh = Parameters.Aqh;
+		Bqh = Parameters.Bqh;
+
+	}
+
+
+	public boolean FluxCondition(boolean current) {
+		return true;
+	}
+
+
+	public double Value(double current, double suctionBottom, double conductivityBottom) {
+		return Aqh * Math.exp(Bqh * Math.abs(suctionBottom - GWL0L));
+	}
+
+
+	public double ValueDerivative(double suctionBottom, double conductivityDerivativeBottom) {
+		double GWL = suctionBottom - GWL0L;
+		return Bqh * Math.signum(GWL) * Aqh * Math.exp(Bqh * Math.abs(GWL));
+	}
+
+
+	public double ValueDerivativeUpper(double conductivityDerivativeUpper) {
+		return 0.0;
+	}
+
+
+	public boolean SeepageFace() {
+		return false;
+	}
+
+}
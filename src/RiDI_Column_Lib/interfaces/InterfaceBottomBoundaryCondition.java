@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (C) 2015 Fabio Cervo, Vicente Medina
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package RiDI_Column_Lib.interfaces;
+
+import RiDI_Column_Lib.BottomBoundaryCondition;
+
+/**
+ * Bottom boundary condition of the Richards solver. The model is created once from the name in bottomInfiltration.txt
+ * and gives, at every iteration, the type (flux or pressure) and the value imposed at the bottom node.
+ */
+public interface InterfaceBottomBoundaryCondition {
+
+	public void Initialize(BottomBoundaryCondition Parameters);
+	public boolean FluxCondition(boolean current);
+	public double Value(double current, double suctionBottom, double conductivityBottom);
+	public double ValueDerivative(double suctionBottom, double conductivityDerivativeBottom);
+	public double ValueDerivativeUpper(double conductivityDerivativeUpper);
+	public boolean SeepageFace();
+
+}
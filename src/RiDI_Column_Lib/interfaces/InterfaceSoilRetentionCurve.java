@@ -29,6 +29,7 @@ public interface InterfaceSoilRetentionCurve {
 	
 	public double Suction(double saturation, SoilType SoilProperties);
 	public double HydraulicConductivity(double suction, SoilType SoilProperties);
+	public double HydraulicConductivityDerivative(double suction, SoilType SoilProperties);
 	public double WaterCapacity(double suction, SoilType SoilProperties);
 	public double WaterContent(double suction, SoilType SoilProperties);
 	public double Saturation(double suction, SoilType SoilProperties);
@@ -40,7 +40,7 @@ public class SRC_van_Genuchten implements InterfaceSoilRetentionCurve {
 	public double Suction(double saturation, SoilType SoilProperties) {
 
 		//Log
-		logger.debug("Call to Suction(" + saturation + ","+ SoilProperties + ").");
+		if(logger.isDebugEnabled()) logger.debug("Call to Suction(" + saturation + ","+ SoilProperties + ").");
 		
 		double m = 1.0 - 1.0/SoilProperties.n;
 		return Math.max( -1.0 / SoilProperties.a * Math.pow(Math.pow(saturation,(-1.0 / m)) - 1.0, (1.0 / SoilProperties.n)), -1.e37);
@@ -50,7 +50,7 @@ public class SRC_van_Genuchten implements InterfaceSoilRetentionCurve {
 	public double HydraulicConductivity(double suction, SoilType SoilProperties) {
 
 		//Log
-		logger.debug("Call to HydraulicConductivity(" + suction + ","+ SoilProperties + ").");
+		if(logger.isDebugEnabled()) logger.debug("Call to HydraulicConductivity(" + suction + ","+ SoilProperties + ").");
 		
 		double HMin = -Math.pow(1.0e+300,(1.0/SoilProperties.n)) / Math.max(SoilProperties.a, 1.0e+0);
 		double HH = Math.max(suction,HMin);
@@ -77,10 +77,51 @@ public class SRC_van_Genuchten implements InterfaceSoilRetentionCurve {
 
 	}
 
+	public double HydraulicConductivityDerivative(double suction, SoilType SoilProperties) {
+
+		//Log
+		if(logger.isDebugEnabled()) logger.debug("Call to HydraulicConductivityDerivative(" + suction + ","+ SoilProperties + ").");
+
+		double HMin = -Math.pow(1.0e+300,(1.0/SoilProperties.n)) / Math.max(SoilProperties.a, 1.0e+0);
+		double HH = Math.max(suction,HMin);
+
+		if(suction < 0.0) {
+
+			double m = 1.0 - 1.0/SoilProperties.n;
+			double Qee = Math.pow(1.0 + Math.pow((-SoilProperties.a * HH),SoilProperties.n),-m);
+			double Qm = Math.pow(Qee,(1.0/m));
+			double FFQ = 1.0 - Math.pow(1.0-Qm, m);
+			double dFFQ;
+
+			if(FFQ < 0.0) {
+				// same series expansion used in HydraulicConductivity
+				FFQ = m * Qm;
+				dFFQ = Qm / Qee;
+			} else {
+				// dK/dSe is not bounded at saturation, limit 1-Se^(1/m)
+				dFFQ = Math.pow(Math.max(1.0-Qm, 1.0e-12), m-1.0) * Qm / Qee;
+			}
+
+			//Chain rule: dK/dh = Ks * dKr/dSe * dSe/dh
+			double dKr = SoilProperties.t * Math.pow(Qee,SoilProperties.t-1.0) * Math.pow(FFQ, 2) + Math.pow(Qee,SoilProperties.t) * 2.0 * FFQ * dFFQ;
+			double dSe = m * SoilProperties.n * Math.pow(SoilProperties.a, SoilProperties.n) * Math.pow(-HH, SoilProperties.n-1.0) *
+					Math.pow(1.0 + Math.pow((-SoilProperties.a * HH),SoilProperties.n),(-m-1));
+
+			//Same lower limit as the conductivity
+			if(SoilProperties.Ks * Math.pow(Qee,SoilProperties.t) * Math.pow(FFQ, 2) <= 1.0e-37) return 0.0;
+
+			return SoilProperties.Ks * dKr * dSe;
+
+		} else {
+			return 0.0;
+		}
+
+	}
+
 	public double WaterCapacity(double suction, SoilType SoilProperties) {
 
 		//Log
-		logger.debug("Call to WaterCapacity(" + suction + ","+ SoilProperties + ").");
+		if(logger.isDebugEnabled()) logger.debug("Call to WaterCapacity(" + suction + ","+ SoilProperties + ").");
 
 		double m = 1.0 - 1.0 / SoilProperties.n;
 
@@ -103,7 +144,7 @@ public class SRC_van_Genuchten implements InterfaceSoilRetentionCurve {
 	public double WaterContent(double suction, SoilType SoilProperties) {
 
 		//Log
-		logger.debug("Call to WaterContent(" + suction + ","+ SoilProperties + ").");
+		if(logger.isDebugEnabled()) logger.debug("Call to WaterContent(" + suction + ","+ SoilProperties + ").");
 
 		double m = 1.0 - 1.0 / SoilProperties.n;
 
@@ -124,7 +165,7 @@ public class SRC_van_Genuchten implements InterfaceSoilRetentionCurve {
 	public double Saturation(double suction, SoilType SoilProperties) {
 
 		//Log
-		logger.debug("Call to Saturation(" + suction + ","+ SoilProperties + ").");
+		if(logger.isDebugEnabled()) logger.debug("Call to Saturation(" + suction + ","+ SoilProperties + ").");
 
 		double m = 1.0 - 1.0 / SoilProperties.n;
 